@@ -0,0 +1,48 @@
+package pointio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Converts a text data set, one point per line, to a binary point file that
+ * later runs can map instead of parsing.
+ */
+public class Convert {
+
+    /**
+     * Main method; converts a data set
+     * @param args path of the text data set, then optionally the path to
+     * write the point file to (the text path with a .pts extension if left
+     * out)
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: Convert <data set> [point file]");
+            System.exit(1);
+        }
+
+        File input = new File(args[0]);
+        File output = new File(args.length > 1 ? args[1]
+                : args[0].replaceFirst("(\\.[^.\\\\/]*)?$", ".pts"));
+        try {
+            if (PointFile.isPointFile(input)) {
+                System.err.println(input + " is already a point file.");
+                System.exit(1);
+            }
+            PointStore points = PointParser.parse(input);
+            PointFile.write(points, output);
+            System.out.println("Wrote " + points.size() + " points to "
+                    + output + ", bounding box " + Arrays.toString(
+                            PointFile.open(output).getBounds()));
+        } catch (IOException ex) {
+            System.err.println("Failed to convert " + input + ": "
+                    + ex.getMessage());
+            System.exit(1);
+        }
+    }
+}
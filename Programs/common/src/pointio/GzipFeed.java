@@ -0,0 +1,196 @@
+package pointio;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Decompresses a gzip file on its own thread, handing the bytes over in
+ * large buffers, so a parser can work on one buffer while the next one is
+ * being inflated. Nothing is written to disk.
+ *
+ * A fixed set of buffers goes round between the two threads: the reader
+ * gives each buffer back once it is done with it, and the decompressing
+ * thread waits for one to come back when all of them are full.
+ */
+public class GzipFeed implements Runnable {
+
+    /**
+     * Number of bytes in each buffer.
+     */
+    private static final int BUFFER = 1 << 20;
+
+    /**
+     * Number of buffers going round.
+     */
+    private static final int BUFFERS = 4;
+
+    /**
+     * Buffer that marks the end of the data.
+     */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    /**
+     * File being decompressed.
+     */
+    private final File file;
+
+    /**
+     * Buffers ready to be filled.
+     */
+    private final BlockingQueue<ByteBuffer> empty;
+
+    /**
+     * Buffers filled but not yet taken, then the end marker.
+     */
+    private final BlockingQueue<ByteBuffer> full;
+
+    /**
+     * Thread doing the decompressing, null until started.
+     */
+    private Thread inflater;
+
+    /**
+     * Why decompressing stopped early, null if it did not.
+     */
+    private volatile IOException failure;
+
+    /**
+     * Whether the end of the data has been taken.
+     */
+    private boolean done;
+
+    /**
+     * Creates a feed for a gzip file.
+     *
+     * @param f file to decompress
+     */
+    public GzipFeed(File f) {
+        file = f;
+        empty = new ArrayBlockingQueue<>(BUFFERS);
+        full = new ArrayBlockingQueue<>(BUFFERS + 1);
+        for (int i = 0; i < BUFFERS; i++) {
+            empty.add(ByteBuffer.allocate(BUFFER));
+        }
+    }
+
+    /**
+     * Whether a file starts like a gzip file.
+     *
+     * @param f file to check
+     * @return true if the file starts with the gzip magic number
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isGzip(File f) throws IOException {
+        try (InputStream in = new FileInputStream(f)) {
+            return in.read() == 0x1F && in.read() == 0x8B;
+        }
+    }
+
+    /**
+     * Starts decompressing on a new thread.
+     */
+    public void start() {
+        inflater = new Thread(this, "gzip-inflater");
+        inflater.setDaemon(true);
+        inflater.start();
+    }
+
+    /**
+     * Waits for the next buffer of decompressed bytes.
+     *
+     * @return next buffer, to be handed back with release, or null after
+     * the last one
+     * @throws IOException if the file could not be decompressed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public ByteBuffer take() throws IOException, InterruptedException {
+        if (done) {
+            return null;
+        }
+        ByteBuffer next = full.take();
+        if (next == END) {
+            done = true;
+            if (failure != null) {
+                throw failure;
+            }
+            return null;
+        }
+        return next;
+    }
+
+    /**
+     * Hands a buffer back to be filled again.
+     *
+     * @param b buffer from take, no longer in use
+     */
+    public void release(ByteBuffer b) {
+        empty.add(b);
+    }
+
+    /**
+     * Stops decompressing early, for readers that give up before the end.
+     */
+    public void stop() {
+        if (inflater != null) {
+            inflater.interrupt();
+        }
+    }
+
+    /**
+     * Fills buffers with decompressed bytes until the end of the file, then
+     * puts the end marker.
+     */
+    @Override
+    public void run() {
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file),
+                1 << 16)) {
+            while (true) {
+                ByteBuffer b = empty.take();
+                int n = fill(in, b.array());
+                if (n == 0) {
+                    break;
+                }
+                b.clear();
+                b.limit(n);
+                full.put(b);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new IOException("Decompressing failed: " + e, e);
+        } catch (InterruptedException e) {
+            return;
+        }
+        try {
+            full.put(END);
+        } catch (InterruptedException e) {
+            //the reader stopped, so nobody is waiting for the end
+        }
+    }
+
+    /**
+     * Reads until an array is full or the data ends.
+     *
+     * @param in stream to read
+     * @param a array to fill
+     * @return number of bytes read, 0 at the end of the data
+     * @throws IOException if the stream cannot be read
+     */
+    private static int fill(InputStream in, byte[] a) throws IOException {
+        int n = 0, r;
+        while (n < a.length && (r = in.read(a, n, a.length - n)) > 0) {
+            n += r;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,384 @@
+package pointio;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * The cluster of every point of a data set, packed into as few bits as k
+ * allows, in a file meant to be mapped. A label file is written by giving it
+ * the label of every point in order, along with the centres the labels refer
+ * to; the engine that wrote it decides which centre a point belongs to.
+ *
+ * Everything is little endian. The file starts with a 32 byte header:
+ *
+ *   0  int   magic number, "LBLS"
+ *   4  int   format version, 1
+ *   8  int   k
+ *   12 int   bits per label, ceil(log2 k) and at least 1
+ *   16 long  number of points
+ *   24 long  fingerprint of the data set, see SnapshotCache.fingerprint
+ *
+ * followed by the x coordinate of each centre, then the y coordinate of each
+ * centre, as ints, then padding to a multiple of 8 bytes. The labels come
+ * last, as a stream of longs: label i is bits i * b to (i + 1) * b - 1 of the
+ * stream, counting from the lowest bit of the first long, and may run over
+ * from one long into the next.
+ */
+public class LabelFile implements Closeable {
+
+    /**
+     * "LBLS" read as a little endian int.
+     */
+    private static final int MAGIC = 0x534C424C;
+
+    /**
+     * Version of the format this class writes.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Number of bytes before the centres.
+     */
+    private static final int HEADER = 32;
+
+    /**
+     * Number of bytes mapped at a time, a multiple of 8.
+     */
+    private static final long WINDOW = 1L << 27;
+
+    /**
+     * File holding the labels.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Windows of the labels, each WINDOW bytes but the last.
+     */
+    private final ByteBuffer[] windows;
+
+    /**
+     * Centres the points are labelled with.
+     */
+    private final int[] xs, ys;
+
+    /**
+     * Number of points in the data set.
+     */
+    private final long n;
+
+    /**
+     * Fingerprint of the data set.
+     */
+    private final long fingerprint;
+
+    /**
+     * Number of bits per label.
+     */
+    private final int bits;
+
+    /**
+     * Whether the file was created for writing.
+     */
+    private final boolean writing;
+
+    /**
+     * Number of points labelled so far, when writing.
+     */
+    private long added;
+
+    /**
+     * Labels not yet stored, in the low bits, when writing.
+     */
+    private long word;
+
+    /**
+     * Creates a label file, sized for a data set, and writes its header.
+     * The label of every point is then given to add in order, and the file
+     * is closed.
+     *
+     * @param file file to write
+     * @param n number of points in the data set
+     * @param fingerprint fingerprint of the data set
+     * @param xs x coordinate of each centre
+     * @param ys y coordinate of each centre
+     * @return label file to give the points to
+     * @throws IOException if the file cannot be written
+     */
+    public static LabelFile create(File file, long n, long fingerprint,
+            int[] xs, int[] ys) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            int bits = bits(xs.length);
+            ByteBuffer header = ByteBuffer.allocate(labelStart(xs.length))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(xs.length)
+                    .putInt(bits).putLong(n).putLong(fingerprint);
+            for (int x : xs) {
+                header.putInt(x);
+            }
+            for (int y : ys) {
+                header.putInt(y);
+            }
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            //truncate cannot make a file longer, so the last byte is
+            //written to give the file its full size before it is mapped
+            long size = labelStart(xs.length) + labelBytes(n, bits);
+            if (size > channel.size()) {
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            }
+            return new LabelFile(channel, FileChannel.MapMode.READ_WRITE,
+                    xs.clone(), ys.clone(), n, fingerprint);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps a label file for reading.
+     *
+     * @param file label file to read
+     * @return the label file
+     * @throws IOException if the file cannot be read, or is not a label file
+     */
+    public static LabelFile open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ);
+        try {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(channel.size(), HEADER))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.remaining() < HEADER || header.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a label file");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException(file + " is label file version "
+                        + header.getInt(4) + ", expected " + VERSION);
+            }
+            int k = header.getInt(8);
+            long n = header.getLong(16);
+            if (k < 1 || n < 0 || header.getInt(12) != bits(k)
+                    || channel.size() != labelStart(k)
+                    + labelBytes(n, bits(k))) {
+                throw new IOException(file + " is damaged: header does not "
+                        + "match the file size");
+            }
+            IntBuffer centres = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER, 8L * k).order(ByteOrder.LITTLE_ENDIAN)
+                    .asIntBuffer();
+            int[] xs = new int[k], ys = new int[k];
+            centres.get(xs).get(ys);
+            return new LabelFile(channel, FileChannel.MapMode.READ_ONLY, xs,
+                    ys, n, header.getLong(24));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps the labels of an open file.
+     *
+     * @param c open file
+     * @param mode whether to map for reading or for writing
+     * @param x x coordinate of each centre
+     * @param y y coordinate of each centre
+     * @param size number of points
+     * @param f fingerprint of the data set
+     * @throws IOException if the file cannot be mapped
+     */
+    private LabelFile(FileChannel c, FileChannel.MapMode mode, int[] x,
+            int[] y, long size, long f) throws IOException {
+        channel = c;
+        xs = x;
+        ys = y;
+        n = size;
+        fingerprint = f;
+        bits = bits(x.length);
+        writing = mode == FileChannel.MapMode.READ_WRITE;
+
+        long start = labelStart(x.length), length = labelBytes(n, bits);
+        windows = new ByteBuffer[(int) ((length + WINDOW - 1) / WINDOW)];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = channel.map(mode, start + i * WINDOW,
+                    Math.min(WINDOW, length - i * WINDOW))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Stores the label of the next point.
+     *
+     * @param label position of the point's centre
+     */
+    public void add(int label) {
+        if (!writing) {
+            throw new IllegalStateException("Label file is open for reading");
+        }
+        if (added >= n) {
+            throw new IllegalStateException("Every point has a label");
+        }
+        if (label < 0 || label >= xs.length) {
+            throw new IllegalArgumentException("No centre " + label);
+        }
+        int offset = (int) ((added * bits) & 63);
+        word |= (long) label << offset;
+        if (offset + bits >= 64) {
+            putWord((added * bits) >>> 6, word);
+            //bits of the label that did not fit start the next long
+            word = offset + bits == 64 ? 0 : (long) label >>> (64 - offset);
+        }
+        added++;
+    }
+
+    /**
+     * Getter for a point's label
+     *
+     * @param i index of the point
+     * @return position of the point's centre
+     */
+    public int get(long i) {
+        if (i < 0 || i >= n) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: "
+                    + n);
+        }
+        long bit = i * bits, index = bit >>> 6;
+        int offset = (int) (bit & 63);
+        long value = getWord(index) >>> offset;
+        if (offset + bits > 64) {
+            value |= getWord(index + 1) << (64 - offset);
+        }
+        return (int) (value & ((1L << bits) - 1));
+    }
+
+    /**
+     * Getter for the number of points
+     *
+     * @return size of the data set
+     */
+    public long size() {
+        return n;
+    }
+
+    /**
+     * Getter for the fingerprint of the labelled data set
+     *
+     * @return fingerprint written with the labels
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Getter for the centres' x coordinates
+     *
+     * @return x coordinate of each centre
+     */
+    public int[] getXs() {
+        return xs.clone();
+    }
+
+    /**
+     * Getter for the centres' y coordinates
+     *
+     * @return y coordinate of each centre
+     */
+    public int[] getYs() {
+        return ys.clone();
+    }
+
+    /**
+     * Stores the last partly filled long, when writing, and closes the file.
+     *
+     * @throws IOException if not every point was labelled, or the file
+     * cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!writing) {
+                return;
+            }
+            if ((added * bits & 63) != 0) {
+                putWord((added * bits) >>> 6, word);
+            }
+            if (added != n) {
+                throw new IOException("Only " + added + " of " + n
+                        + " points were labelled");
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads one long of the labels.
+     *
+     * @param index position of the long
+     * @return the long
+     */
+    private long getWord(long index) {
+        long byteIndex = index * 8;
+        return windows[(int) (byteIndex / WINDOW)]
+                .getLong((int) (byteIndex % WINDOW));
+    }
+
+    /**
+     * Writes one long of the labels.
+     *
+     * @param index position of the long
+     * @param value the long
+     */
+    private void putWord(long index, long value) {
+        long byteIndex = index * 8;
+        windows[(int) (byteIndex / WINDOW)]
+                .putLong((int) (byteIndex % WINDOW), value);
+    }
+
+    /**
+     * Number of bits needed for a label.
+     *
+     * @param k number of clusters
+     * @return ceil(log2 k), at least 1
+     */
+    private static int bits(int k) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(k - 1));
+    }
+
+    /**
+     * Position of the labels in the file.
+     *
+     * @param k number of clusters
+     * @return size of the header and centres, rounded up to 8 bytes
+     */
+    private static int labelStart(int k) {
+        return (HEADER + 8 * k + 7) & ~7;
+    }
+
+    /**
+     * Number of bytes of labels.
+     *
+     * @param n number of points
+     * @param bits number of bits per label
+     * @return bytes in the longs holding every label
+     */
+    private static long labelBytes(long n, int bits) {
+        return (n * bits + 63) / 64 * 8;
+    }
+}
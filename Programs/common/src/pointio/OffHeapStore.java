@@ -0,0 +1,255 @@
+package pointio;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * A data set kept off the heap, indexed by long, for data sets with more
+ * points than a Java array or a PointStore can hold. The coordinates are kept
+ * in two columns of fixed-size segments of direct memory, so the heap only
+ * holds one reference per segment, and the garbage collector never has to
+ * look at the points.
+ *
+ * Only the k-means streaming loop works on a store by long index. Everything
+ * else indexes points by int, so it copies the store into a PointStore with
+ * toPointStore, which holds at most Integer.MAX_VALUE / 4 points, about 536
+ * million.
+ *
+ * Direct memory counts against the JVM's -XX:MaxDirectMemorySize limit, not
+ * the heap's -Xmx, so a large data set needs that limit raised: 8 bytes per
+ * point, rounded up to whole segments. When it is not set, the limit is about
+ * the size of the heap.
+ *
+ * Closing the store drops its segments and makes any later use of it fail.
+ * The memory is given back once the segments, and every view of them from
+ * window, have been collected, so a view stays readable for as long as it is
+ * held.
+ */
+public class OffHeapStore implements Closeable {
+
+    /**
+     * Number of points in each segment, a power of 2.
+     */
+    private static final int SEGMENT = 1 << 20;
+
+    /**
+     * Coordinate segments, one pair per SEGMENT points.
+     */
+    private final List<IntBuffer> xs, ys;
+
+    /**
+     * Number of points stored.
+     */
+    private long size;
+
+    /**
+     * Whether the store has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Creates an empty store.
+     */
+    public OffHeapStore() {
+        xs = new ArrayList<>();
+        ys = new ArrayList<>();
+    }
+
+    /**
+     * Adds a point to the end of the store.
+     *
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     */
+    public void add(int x, int y) {
+        check();
+        int offset = (int) (size & (SEGMENT - 1));
+        if (offset == 0) {
+            xs.add(segment());
+            ys.add(segment());
+        }
+        xs.get(xs.size() - 1).put(offset, x);
+        ys.get(ys.size() - 1).put(offset, y);
+        size++;
+    }
+
+    /**
+     * Adds every point of a store to the end of this one.
+     *
+     * @param points points to add, in order
+     */
+    public void addAll(PointStore points) {
+        IntBuffer x = points.getXColumn(), y = points.getYColumn();
+        int offset, length;
+        while (x.hasRemaining()) {
+            check();
+            offset = (int) (size & (SEGMENT - 1));
+            if (offset == 0) {
+                xs.add(segment());
+                ys.add(segment());
+            }
+            length = Math.min(SEGMENT - offset, x.remaining());
+            copy(x, xs.get(xs.size() - 1), offset, length);
+            copy(y, ys.get(ys.size() - 1), offset, length);
+            size += length;
+        }
+    }
+
+    /**
+     * Getter for a point's x coordinate
+     *
+     * @param i index of the point
+     * @return x coordinate
+     */
+    public int getX(long i) {
+        check(i);
+        return xs.get((int) (i / SEGMENT)).get((int) (i & (SEGMENT - 1)));
+    }
+
+    /**
+     * Getter for a point's y coordinate
+     *
+     * @param i index of the point
+     * @return y coordinate
+     */
+    public int getY(long i) {
+        check(i);
+        return ys.get((int) (i / SEGMENT)).get((int) (i & (SEGMENT - 1)));
+    }
+
+    /**
+     * Views a run of points, from a point to the end of its segment or of
+     * the store, whichever comes first.
+     *
+     * @param from index of the first point
+     * @return read only x coordinates, then y coordinates, of the run
+     */
+    public IntBuffer[] window(long from) {
+        check(from);
+        int segment = (int) (from / SEGMENT);
+        int offset = (int) (from & (SEGMENT - 1));
+        int length = (int) Math.min(SEGMENT - offset, size - from);
+        return new IntBuffer[]{view(xs.get(segment), offset, length),
+            view(ys.get(segment), offset, length)};
+    }
+
+    /**
+     * Number of points stored.
+     *
+     * @return size of the data set
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Copies the points into a PointStore with its columns off the heap, for
+     * the code that indexes points by int.
+     *
+     * @return read only store holding every point, in order
+     * @throws IllegalStateException if there are too many points for a
+     * PointStore
+     */
+    public PointStore toPointStore() {
+        check();
+        if (size > Integer.MAX_VALUE / 4) {
+            throw new IllegalStateException("Too many points for a "
+                    + "PointStore: " + size);
+        }
+        IntBuffer x = PointStore.column((int) Math.max(1, size), true);
+        IntBuffer y = PointStore.column((int) Math.max(1, size), true);
+        for (long from = 0; from < size; from += SEGMENT) {
+            IntBuffer[] run = window(from);
+            x.put(run[0]);
+            y.put(run[1]);
+        }
+        x.flip();
+        y.flip();
+        return new PointStore(x, y);
+    }
+
+    /**
+     * Drops every segment, leaving them to the garbage collector. The store
+     * cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        xs.clear();
+        ys.clear();
+        size = 0;
+    }
+
+    /**
+     * Allocates a segment of direct memory.
+     *
+     * @return empty segment of SEGMENT coordinates
+     */
+    private IntBuffer segment() {
+        return ByteBuffer.allocateDirect(4 * SEGMENT)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /**
+     * Views part of a segment.
+     *
+     * @param segment segment to view
+     * @param offset first coordinate of the view
+     * @param length number of coordinates
+     * @return read only view of the coordinates
+     */
+    private IntBuffer view(IntBuffer segment, int offset, int length) {
+        IntBuffer view = segment.asReadOnlyBuffer();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice();
+    }
+
+    /**
+     * Moves coordinates from a column into a segment.
+     *
+     * @param from column to take coordinates from, advanced past them
+     * @param segment segment to put them in
+     * @param offset where in the segment to put them
+     * @param length number of coordinates
+     */
+    private void copy(IntBuffer from, IntBuffer segment, int offset,
+            int length) {
+        IntBuffer part = from.duplicate();
+        part.limit(part.position() + length);
+        IntBuffer to = segment.duplicate();
+        to.position(offset);
+        to.put(part);
+        from.position(from.position() + length);
+    }
+
+    /**
+     * Checks the store is open.
+     */
+    private void check() {
+        if (closed) {
+            throw new IllegalStateException("Store is closed");
+        }
+    }
+
+    /**
+     * Checks the store is open and holds a point.
+     *
+     * @param i index of the point
+     */
+    private void check(long i) {
+        check();
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: "
+                    + size);
+        }
+    }
+}
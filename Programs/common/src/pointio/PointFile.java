@@ -0,0 +1,312 @@
+package pointio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * A data set saved in binary, so it can be mapped straight into a PointStore
+ * instead of being parsed again on every run.
+ *
+ * The file is a 64 byte header followed by the x coordinate of every point,
+ * then the y coordinate of every point, each a little endian 32 bit int. The
+ * header holds, in order: the magic number, the format version, the number
+ * of points (8 bytes), the number of dimensions, the coordinate type, and the
+ * bounding box as smallest x, smallest y, largest x and largest y. The rest
+ * of the header is zero.
+ */
+public class PointFile {
+
+    /**
+     * First four bytes of every point file, "PNTS".
+     */
+    private static final int MAGIC = 0x53544E50;
+
+    /**
+     * Version of the format written.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Number of bytes before the columns.
+     */
+    private static final int HEADER = 64;
+
+    /**
+     * Number of dimensions of every point.
+     */
+    private static final int DIMENSIONS = 2;
+
+    /**
+     * Type code of 32 bit signed int coordinates.
+     */
+    private static final int INT32 = 0;
+
+    /**
+     * The points, mapped from the file.
+     */
+    private final PointStore points;
+
+    /**
+     * Bounding box of the points.
+     */
+    private final int minX, minY, maxX, maxY;
+
+    /**
+     * Creates a point file from its header and points.
+     *
+     * @param p the points
+     * @param bounds smallest x, smallest y, largest x and largest y
+     */
+    private PointFile(PointStore p, int[] bounds) {
+        points = p;
+        minX = bounds[0];
+        minY = bounds[1];
+        maxX = bounds[2];
+        maxY = bounds[3];
+    }
+
+    /**
+     * Whether a file starts like a point file.
+     *
+     * @param file file to check
+     * @return true if the file starts with the magic number
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isPointFile(File file) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            while (magic.hasRemaining() && channel.read(magic) > 0) {
+                //keep reading until the four bytes are in
+            }
+        }
+        return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+    }
+
+    /**
+     * Maps a point file. The points are read straight from the mapping, so
+     * nothing is copied or parsed.
+     *
+     * @param file file to map
+     * @return the header and points of the file
+     * @throws IOException if the file cannot be read or is not a point file
+     */
+    public static PointFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer header = header(channel, file);
+            long n = header.getLong(8);
+            int[] bounds = {header.getInt(24), header.getInt(28),
+                header.getInt(32), header.getInt(36)};
+            return new PointFile(new PointStore(
+                    column(channel, HEADER, n, file),
+                    column(channel, HEADER + 4 * n, n, file)), bounds);
+        }
+    }
+
+    /**
+     * Reads the number of points in an open point file, for files read a
+     * window at a time. Such files may hold more points than fit in a
+     * PointStore.
+     *
+     * @param channel the open file
+     * @param file file being read, for error messages
+     * @return number of points
+     * @throws IOException if the file cannot be read or is not a point file
+     */
+    public static long count(FileChannel channel, File file)
+            throws IOException {
+        return header(channel, file).getLong(8);
+    }
+
+    /**
+     * Maps the coordinates of a run of points in an open point file.
+     *
+     * @param channel the open file
+     * @param n number of points in the file
+     * @param from index of the first point
+     * @param length number of points
+     * @return x coordinates, then y coordinates, of the points
+     * @throws IOException if the points cannot be mapped
+     */
+    public static IntBuffer[] window(FileChannel channel, long n, long from,
+            int length) throws IOException {
+        if (from < 0 || length < 0 || from + length > n
+                || 4L * length > Integer.MAX_VALUE) {
+            throw new IOException("Window " + from + "+" + length
+                    + " does not fit in " + n + " points");
+        }
+        return new IntBuffer[]{
+            channel.map(FileChannel.MapMode.READ_ONLY, HEADER + 4 * from,
+                    4L * length).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(),
+            channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER + 4 * (n + from), 4L * length)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()};
+    }
+
+    /**
+     * Writes a data set as a point file. The file is written beside the
+     * target and moved into place, so a half written file is never left
+     * where a point file is expected.
+     *
+     * @param points data set to write
+     * @param file file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(PointStore points, File file) throws IOException {
+        long n = points.size();
+        int x, y;
+        ByteBuffer header = ByteBuffer.allocate(HEADER)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(n).putInt(DIMENSIONS)
+                .putInt(INT32);
+        if (n == 0) {
+            header.putInt(0).putInt(0).putInt(0).putInt(0);
+        } else {
+            int[] box = {Integer.MAX_VALUE, Integer.MAX_VALUE,
+                Integer.MIN_VALUE, Integer.MIN_VALUE};
+            for (int i = 0; i < n; i++) {
+                x = points.getX(i);
+                y = points.getY(i);
+                box[0] = Math.min(box[0], x);
+                box[1] = Math.min(box[1], y);
+                box[2] = Math.max(box[2], x);
+                box[3] = Math.max(box[3], y);
+            }
+            header.putInt(box[0]).putInt(box[1]).putInt(box[2])
+                    .putInt(box[3]);
+        }
+        header.clear();
+
+        File partial = File.createTempFile("points", ".part",
+                file.getAbsoluteFile().getParentFile());
+        try {
+            try (FileChannel channel = FileChannel.open(partial.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                map(channel, HEADER, n, file).put(points.getXColumn());
+                map(channel, HEADER + 4 * n, n, file)
+                        .put(points.getYColumn());
+            }
+            Files.move(partial.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            partial.delete();
+        }
+    }
+
+    /**
+     * Getter for the points
+     *
+     * @return read only store over the file's columns
+     */
+    public PointStore getPoints() {
+        return points;
+    }
+
+    /**
+     * Getter for the bounding box of the points
+     *
+     * @return smallest x, smallest y, largest x and largest y, all 0 if
+     * there are no points
+     */
+    public int[] getBounds() {
+        return new int[]{minX, minY, maxX, maxY};
+    }
+
+    /**
+     * Reads and checks the header of an open point file.
+     *
+     * @param channel the open file
+     * @param file file being read, for error messages
+     * @return the header
+     * @throws IOException if the file cannot be read or is not a point file
+     */
+    private static ByteBuffer header(FileChannel channel, File file)
+            throws IOException {
+        if (channel.size() < HEADER) {
+            throw new IOException("Not a point file: " + file);
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a point file: " + file);
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unknown point file version "
+                    + header.getInt(4) + ": " + file);
+        }
+        if (header.getInt(16) != DIMENSIONS || header.getInt(20) != INT32) {
+            throw new IOException("Only 2 dimensional int points are "
+                    + "supported: " + file);
+        }
+        long n = header.getLong(8);
+        if (n < 0 || channel.size() != HEADER + 8 * n) {
+            throw new IOException("Point file is truncated: " + file);
+        }
+        return header;
+    }
+
+    /**
+     * Maps one column of a point file for reading.
+     *
+     * @param channel the open file
+     * @param start byte offset of the column
+     * @param n number of points
+     * @param file file being read, for error messages
+     * @return the column
+     * @throws IOException if the column cannot be mapped
+     */
+    private static IntBuffer column(FileChannel channel, long start, long n,
+            File file) throws IOException {
+        checkSize(n, file);
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, 4 * n)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * Maps one column of a point file for writing.
+     *
+     * @param channel the open file
+     * @param start byte offset of the column
+     * @param n number of points
+     * @param file file being written, for error messages
+     * @return the column
+     * @throws IOException if the column cannot be mapped
+     */
+    private static IntBuffer map(FileChannel channel, long start, long n,
+            File file) throws IOException {
+        checkSize(n, file);
+        return channel.map(FileChannel.MapMode.READ_WRITE, start, 4 * n)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * Checks a column fits in one mapping.
+     *
+     * @param n number of points
+     * @param file file being mapped, for error messages
+     * @throws IOException if the column is too large
+     */
+    private static void checkSize(long n, File file) throws IOException {
+        if (4 * n > Integer.MAX_VALUE) {
+            throw new IOException("Too many points to map: " + n + " in "
+                    + file);
+        }
+    }
+}
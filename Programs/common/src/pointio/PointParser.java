@@ -0,0 +1,544 @@
+package pointio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Reads a data set of one point per line, two whitespace separated integers
+ * each, straight from the file's bytes into a PointStore. The file is memory
+ * mapped a window at a time and parsed byte by byte, so no line or token is
+ * ever turned into a String.
+ *
+ * Anything after the second integer on a line is ignored, and blank lines
+ * are skipped. Any other line that does not start with two integers is
+ * reported with its line number and byte offset, then skipped.
+ *
+ * A large file is cut into chunks that end just after a newline, and each
+ * chunk is parsed by its own task into its own store. The stores are joined
+ * in file order, so every point keeps the index it would have had from a
+ * single pass, and malformed lines are reported in file order too. Chunks
+ * are parsed a few per core at a time, so reading off the heap never needs
+ * more than those chunks on it.
+ *
+ * Gzip files are recognised by their first bytes and decompressed on their
+ * own thread while they are parsed.
+ */
+public class PointParser {
+
+    /**
+     * Number of bytes mapped at a time.
+     */
+    private static final long WINDOW = 1L << 28;
+
+    /**
+     * Number of malformed lines reported individually.
+     */
+    private static final int MAX_REPORTED = 10;
+
+    /**
+     * Smallest chunk worth giving its own task.
+     */
+    private static final long MIN_CHUNK = 1L << 22;
+
+    /**
+     * Chunks made per core, so a slow chunk does not hold up the rest.
+     */
+    private static final int CHUNKS_PER_CORE = 4;
+
+    /**
+     * Number of points handed on at a time when reading a gzip file.
+     */
+    private static final int GZIP_BATCH = 1 << 20;
+
+    /**
+     * Store the points go into.
+     */
+    private PointStore store;
+
+    /**
+     * Offset of the next byte, and of the start of the current line.
+     */
+    private long offset, lineStart;
+
+    /**
+     * Number of the current line, counting from 1.
+     */
+    private long line;
+
+    /**
+     * Number of integers read on the current line.
+     */
+    private int field;
+
+    /**
+     * Integers read on the current line.
+     */
+    private int x, y;
+
+    /**
+     * Whether the current line has any token, and whether it is malformed.
+     */
+    private boolean started, bad;
+
+    /**
+     * Whether a token is being read, and whether it is negative.
+     */
+    private boolean inToken, negative;
+
+    /**
+     * Characters and digits in the current token so far.
+     */
+    private int length, digits;
+
+    /**
+     * Magnitude of the current token so far.
+     */
+    private long value;
+
+    /**
+     * Number of malformed lines skipped.
+     */
+    private int malformed;
+
+    /**
+     * Line numbers and byte offsets of the first malformed lines.
+     */
+    private final long[] badLines, badOffsets;
+
+    /**
+     * Creates a parser that adds to a store.
+     *
+     * @param s store to add points to
+     */
+    public PointParser(PointStore s) {
+        this(s, 0);
+    }
+
+    /**
+     * Creates a parser for the part of a file that starts at an offset.
+     * Line numbers count from 1 at that offset.
+     *
+     * @param s store to add points to
+     * @param start byte offset of the first byte to be fed
+     */
+    private PointParser(PointStore s, long start) {
+        store = s;
+        line = 1;
+        offset = lineStart = start;
+        badLines = new long[MAX_REPORTED];
+        badOffsets = new long[MAX_REPORTED];
+    }
+
+    /**
+     * Reads a data set from a file.
+     *
+     * @param file file to read
+     * @return the points in the file
+     * @throws IOException if the file cannot be read
+     */
+    public static PointStore parse(File file) throws IOException {
+        return parse(file, false);
+    }
+
+    /**
+     * Reads a data set from a file, optionally into columns off the heap.
+     *
+     * @param file file to read
+     * @param offHeap whether the store's columns are kept off the heap
+     * @return the points in the file
+     * @throws IOException if the file cannot be read
+     */
+    public static PointStore parse(File file, boolean offHeap)
+            throws IOException {
+        List<PointStore> parts = new ArrayList<>();
+        read(file, parts, null);
+        return PointStore.concat(parts, offHeap);
+    }
+
+    /**
+     * Reads a data set of any size from a file into off heap segments. Only
+     * a few chunks are on the heap at a time.
+     *
+     * @param file file to read
+     * @return the points in the file, to be closed by the caller
+     * @throws IOException if the file cannot be read
+     */
+    public static OffHeapStore parseOffHeap(File file) throws IOException {
+        OffHeapStore store = new OffHeapStore();
+        read(file, null, store);
+        return store;
+    }
+
+    /**
+     * Reads a file in chunks, a batch of chunks at a time, handing each
+     * chunk's points on in file order.
+     *
+     * @param file file to read
+     * @param parts list to add each chunk's store to, or null
+     * @param offHeap store to copy each chunk's points into, used if parts
+     * is null
+     * @throws IOException if the file cannot be read
+     */
+    private static void read(File file, List<PointStore> parts,
+            OffHeapStore offHeap) throws IOException {
+        if (GzipFeed.isGzip(file)) {
+            readGzip(file, parts, offHeap);
+            return;
+        }
+        int batch = CHUNKS_PER_CORE * Runtime.getRuntime()
+                .availableProcessors();
+        List<ChunkTask> tasks = new ArrayList<>();
+        long firstLine = 0, more = 0;
+        int reported = 0;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunk = Math.min(WINDOW / 2, Math.max(MIN_CHUNK,
+                    size / batch));
+            long start = 0, end;
+            while (start < size) {
+                tasks.clear();
+                while (start < size && tasks.size() < batch) {
+                    end = size - start <= chunk ? size
+                            : lineEnd(channel, start + chunk, start + WINDOW);
+                    tasks.add(new ChunkTask(channel.map(
+                            FileChannel.MapMode.READ_ONLY, start,
+                            end - start), start));
+                    start = end;
+                }
+                ForkJoinTask.invokeAll(tasks);
+
+                //report in file order, numbering each chunk's lines after
+                //the lines of the chunks before it
+                for (ChunkTask t : tasks) {
+                    PointParser p = t.parser;
+                    for (int i = 0; i < Math.min(p.malformed, MAX_REPORTED);
+                            i++) {
+                        if (reported < MAX_REPORTED) {
+                            report(firstLine + p.badLines[i],
+                                    p.badOffsets[i]);
+                            reported++;
+                        } else {
+                            more++;
+                        }
+                    }
+                    more += Math.max(0, p.malformed - MAX_REPORTED);
+                    firstLine += p.line - 1;
+                    hand(p.store, parts, offHeap);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (offHeap != null) {
+                offHeap.close();
+            }
+            throw e;
+        }
+        if (more > 0) {
+            System.err.println(more + " more malformed lines skipped");
+        }
+    }
+
+    /**
+     * Reads a gzip file, parsing each buffer while the next one is being
+     * decompressed. Compressed data cannot be split into chunks, so one
+     * parser reads it all, handing its points on every GZIP_BATCH points.
+     * Byte offsets in reports count decompressed bytes.
+     *
+     * @param file file to read
+     * @param parts list to add each batch's store to, or null
+     * @param offHeap store to copy each batch's points into, used if parts
+     * is null
+     * @throws IOException if the file cannot be read or decompressed
+     */
+    private static void readGzip(File file, List<PointStore> parts,
+            OffHeapStore offHeap) throws IOException {
+        GzipFeed feed = new GzipFeed(file);
+        PointParser p = new PointParser(new PointStore(GZIP_BATCH));
+        ByteBuffer buf;
+        boolean ended = false;
+
+        feed.start();
+        try {
+            while ((buf = feed.take()) != null) {
+                p.feed(buf);
+                feed.release(buf);
+                if (p.getPending() >= GZIP_BATCH) {
+                    hand(p.take(GZIP_BATCH), parts, offHeap);
+                }
+            }
+            ended = true;
+            p.finish();
+            hand(p.take(1), parts, offHeap);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted reading " + file);
+        } catch (IOException | RuntimeException e) {
+            if (offHeap != null) {
+                offHeap.close();
+            }
+            throw e;
+        } finally {
+            //the inflater thread only stops by itself at the end of the file
+            if (!ended) {
+                feed.stop();
+            }
+        }
+    }
+
+    /**
+     * Hands a store of points on, to a list or into an off heap store.
+     *
+     * @param points points to hand on
+     * @param parts list to add the store to, or null
+     * @param offHeap store to copy the points into, used if parts is null
+     */
+    private static void hand(PointStore points, List<PointStore> parts,
+            OffHeapStore offHeap) {
+        if (parts != null) {
+            parts.add(points);
+        } else {
+            offHeap.addAll(points);
+        }
+    }
+
+    /**
+     * Finds where the line that a byte falls on ends.
+     *
+     * @param channel file being read
+     * @param from offset of the byte
+     * @param limit furthest offset the line may end at
+     * @return offset just after the next newline, or limit if there is none
+     * before it
+     * @throws IOException if the file cannot be read
+     */
+    private static long lineEnd(FileChannel channel, long from, long limit)
+            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 12);
+        long pos = from;
+        limit = Math.min(limit, channel.size());
+        while (pos < limit) {
+            buf.clear();
+            if (channel.read(buf, pos) <= 0) {
+                break;
+            }
+            buf.flip();
+            while (buf.hasRemaining() && pos < limit) {
+                pos++;
+                if (buf.get() == '\n') {
+                    return pos;
+                }
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Parses every remaining byte of a buffer. A line may carry on into the
+     * next buffer.
+     *
+     * @param buf bytes that follow the ones fed so far
+     */
+    public void feed(ByteBuffer buf) {
+        while (buf.hasRemaining()) {
+            byte b = buf.get();
+            if (b == '\n') {
+                endLine();
+                lineStart = offset + 1;
+            } else if (b == ' ' || b == '\t' || b == '\r' || b == '\f'
+                    || b == 0x0B) {
+                if (inToken) {
+                    endToken();
+                }
+            } else if (field < 2 && !bad) {
+                token(b);
+            }
+            offset++;
+        }
+    }
+
+    /**
+     * Ends the last line, for files that do not end with a newline, and
+     * reports how many lines were skipped.
+     */
+    public void finish() {
+        end();
+        for (int i = 0; i < Math.min(malformed, MAX_REPORTED); i++) {
+            report(badLines[i], badOffsets[i]);
+        }
+        if (malformed > MAX_REPORTED) {
+            System.err.println((malformed - MAX_REPORTED)
+                    + " more malformed lines skipped");
+        }
+    }
+
+    /**
+     * Ends the last line if it has anything on it.
+     */
+    private void end() {
+        if (offset > lineStart) {
+            endLine();
+        }
+    }
+
+    /**
+     * Reports a malformed line.
+     *
+     * @param l number of the line
+     * @param o byte offset of the line
+     */
+    private static void report(long l, long o) {
+        System.err.println("Line " + l + " (byte " + o
+                + ") is not a point, skipped");
+    }
+
+    /**
+     * Getter for the number of malformed lines skipped
+     *
+     * @return number of lines skipped
+     */
+    public int getMalformed() {
+        return malformed;
+    }
+
+    /**
+     * Getter for the number of points in the store
+     *
+     * @return number of points parsed since the last take
+     */
+    public int getPending() {
+        return store.size();
+    }
+
+    /**
+     * Hands over the points parsed so far, and carries on into a new store.
+     *
+     * @param capacity number of points to make room for in the new store
+     * @return store of the points parsed since the last take
+     */
+    public PointStore take(int capacity) {
+        PointStore done = store;
+        store = new PointStore(capacity);
+        return done;
+    }
+
+    /**
+     * Adds a byte to the current token.
+     *
+     * @param b byte to add
+     */
+    private void token(byte b) {
+        if (!inToken) {
+            inToken = started = true;
+            negative = false;
+            length = digits = 0;
+            value = 0;
+        }
+        length++;
+        if (length == 1 && (b == '-' || b == '+')) {
+            negative = b == '-';
+        } else if (b >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            digits++;
+            if (value > 1L << 31) {
+                bad = true;
+            }
+        } else {
+            bad = true;
+        }
+    }
+
+    /**
+     * Ends the current token, keeping it if it is one of the first two on
+     * the line.
+     */
+    private void endToken() {
+        inToken = false;
+        if (bad || field >= 2) {
+            return;
+        }
+        long v = negative ? -value : value;
+        if (digits == 0 || v > Integer.MAX_VALUE) {
+            bad = true;
+            return;
+        }
+        if (field == 0) {
+            x = (int) v;
+        } else {
+            y = (int) v;
+        }
+        field++;
+    }
+
+    /**
+     * Ends the current line, adding its point or reporting it.
+     */
+    private void endLine() {
+        if (inToken) {
+            endToken();
+        }
+        if (!bad && field == 2) {
+            store.add(x, y);
+        } else if (started) {
+            if (malformed < MAX_REPORTED) {
+                badLines[malformed] = line;
+                badOffsets[malformed] = lineStart;
+            }
+            malformed++;
+        }
+        line++;
+        field = 0;
+        started = bad = inToken = false;
+    }
+
+    /**
+     * Parses one chunk of a file into a store of its own.
+     */
+    private static class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Bytes of the chunk.
+         */
+        private final ByteBuffer bytes;
+
+        /**
+         * Parser for the chunk.
+         */
+        private final PointParser parser;
+
+        /**
+         * Creates a task for one chunk.
+         *
+         * @param b bytes of the chunk
+         * @param start byte offset of the chunk in the file
+         */
+        ChunkTask(ByteBuffer b, long start) {
+            bytes = b;
+            parser = new PointParser(new PointStore(Math.min(1 << 20,
+                    b.remaining() / 8 + 1)), start);
+        }
+
+        /**
+         * Parses the chunk.
+         */
+        @Override
+        protected void compute() {
+            parser.feed(bytes);
+            parser.end();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package pointio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Parses a data set on its own thread and hands the points over in batches
+ * as they are read, so work on the first points can start while the rest of
+ * the file is still being parsed.
+ *
+ * Batches go through a bounded queue. When the reader falls behind, the
+ * parser waits for room, so no more than a queue's worth of batches is ever
+ * parsed ahead of the reader.
+ */
+public class PointPipe implements Runnable {
+
+    /**
+     * Number of bytes mapped at a time.
+     */
+    private static final long WINDOW = 1L << 28;
+
+    /**
+     * Number of bytes parsed between checks for a full batch.
+     */
+    private static final int SLICE = 1 << 16;
+
+    /**
+     * Batch that marks the end of the data set.
+     */
+    private static final PointStore END = new PointStore(1);
+
+    /**
+     * File being parsed.
+     */
+    private final File file;
+
+    /**
+     * Number of points in each batch but the last, give or take the points
+     * in one slice.
+     */
+    private final int batch;
+
+    /**
+     * Batches parsed but not yet taken.
+     */
+    private final BlockingQueue<PointStore> queue;
+
+    /**
+     * Thread doing the parsing, null until started.
+     */
+    private Thread parser;
+
+    /**
+     * Why parsing stopped early, null if it did not.
+     */
+    private volatile IOException failure;
+
+    /**
+     * Whether the end of the data set has been taken.
+     */
+    private boolean done;
+
+    /**
+     * Creates a pipe for a data set.
+     *
+     * @param f file to parse
+     * @param b number of points in each batch
+     * @param capacity most batches to parse ahead of the reader
+     */
+    public PointPipe(File f, int b, int capacity) {
+        file = f;
+        batch = Math.max(1, b);
+        queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    /**
+     * Starts parsing on a new thread.
+     */
+    public void start() {
+        parser = new Thread(this, "point-parser");
+        parser.setDaemon(true);
+        parser.start();
+    }
+
+    /**
+     * Waits for the next batch.
+     *
+     * @return next batch of points in file order, null after the last one
+     * @throws IOException if the file could not be read
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public PointStore take() throws IOException, InterruptedException {
+        if (done) {
+            return null;
+        }
+        PointStore next = queue.take();
+        if (next == END) {
+            done = true;
+            if (failure != null) {
+                throw failure;
+            }
+            return null;
+        }
+        return next;
+    }
+
+    /**
+     * Stops parsing early, for readers that give up before the end.
+     */
+    public void stop() {
+        if (parser != null) {
+            parser.interrupt();
+        }
+    }
+
+    /**
+     * Parses the file a slice at a time, putting each full batch on the
+     * queue, then the last partial batch and the end marker.
+     */
+    @Override
+    public void run() {
+        PointParser p = new PointParser(new PointStore(batch));
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long pos = 0; pos < size; pos += WINDOW) {
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+                        pos, Math.min(WINDOW, size - pos));
+                while (window.hasRemaining()) {
+                    ByteBuffer slice = window.duplicate();
+                    slice.limit(Math.min(window.limit(),
+                            window.position() + SLICE));
+                    p.feed(slice);
+                    window.position(slice.position());
+                    if (p.getPending() >= batch) {
+                        queue.put(p.take(batch));
+                    }
+                }
+            }
+            p.finish();
+            if (p.getPending() > 0) {
+                queue.put(p.take(1));
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new IOException("Parsing failed: " + e, e);
+        } catch (InterruptedException e) {
+            return;
+        }
+        try {
+            queue.put(END);
+        } catch (InterruptedException e) {
+            //the reader stopped, so nobody is waiting for the end
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package pointio;
+
+import java.awt.Point;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * The data set, stored as two int columns instead of one object per point.
+ * It still reads as a list of points; every get hands out a new Point, so the
+ * points handed out can be changed without changing the data.
+ *
+ * The columns are int buffers, so a store can also sit directly on the
+ * columns of a mapped point file, or keep its columns off the heap, where
+ * their size does not add to garbage collection. A mapped store is read
+ * only.
+ */
+public class PointStore extends AbstractList<Point> implements RandomAccess {
+
+    /**
+     * Coordinates of each point.
+     */
+    private IntBuffer xs, ys;
+
+    /**
+     * Number of points stored.
+     */
+    private int size;
+
+    /**
+     * Creates an empty store.
+     */
+    public PointStore() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty store with room for a number of points.
+     *
+     * @param capacity number of points to make room for
+     */
+    public PointStore(int capacity) {
+        xs = IntBuffer.allocate(Math.max(1, capacity));
+        ys = IntBuffer.allocate(xs.capacity());
+    }
+
+    /**
+     * Creates a read only store over existing columns, without copying them.
+     *
+     * @param x x coordinate of each point
+     * @param y y coordinate of each point, as many as there are x coordinates
+     */
+    public PointStore(IntBuffer x, IntBuffer y) {
+        if (x.remaining() != y.remaining()) {
+            throw new IllegalArgumentException("Columns differ in length: "
+                    + x.remaining() + " and " + y.remaining());
+        }
+        xs = x.slice().asReadOnlyBuffer();
+        ys = y.slice().asReadOnlyBuffer();
+        size = xs.capacity();
+    }
+
+    /**
+     * Joins stores end to end.
+     *
+     * @param parts stores to join, in order
+     * @return a store holding every point of the parts, in order
+     */
+    public static PointStore concat(List<PointStore> parts) {
+        return concat(parts, false);
+    }
+
+    /**
+     * Joins stores end to end, optionally into columns off the heap.
+     *
+     * @param parts stores to join, in order
+     * @param offHeap whether the joined columns are kept off the heap
+     * @return a store holding every point of the parts, in order
+     */
+    public static PointStore concat(List<PointStore> parts, boolean offHeap) {
+        long total = 0;
+        for (PointStore p : parts) {
+            total += p.size;
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many points: " + total);
+        }
+
+        PointStore joined = new PointStore(1);
+        joined.xs = column((int) Math.max(1, total), offHeap);
+        joined.ys = column((int) Math.max(1, total), offHeap);
+        for (PointStore p : parts) {
+            joined.xs.put(p.getXColumn());
+            joined.ys.put(p.getYColumn());
+            joined.size += p.size;
+        }
+        return joined;
+    }
+
+    /**
+     * Adds a point to the end of the store.
+     *
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     */
+    public void add(int x, int y) {
+        if (xs.isReadOnly()) {
+            throw new UnsupportedOperationException("Store is read only");
+        }
+        if (size == xs.capacity()) {
+            int grown = (int) Math.min(Integer.MAX_VALUE - 8, 2L * size);
+            xs = grow(xs, grown);
+            ys = grow(ys, grown);
+        }
+        xs.put(size, x);
+        ys.put(size, y);
+        size++;
+    }
+
+    /**
+     * Adds a point to the end of the store.
+     *
+     * @param p point to add
+     * @return true
+     */
+    @Override
+    public boolean add(Point p) {
+        add(p.x, p.y);
+        return true;
+    }
+
+    /**
+     * Getter for a point's x coordinate
+     *
+     * @param i index of the point
+     * @return x coordinate
+     */
+    public int getX(int i) {
+        return xs.get(i);
+    }
+
+    /**
+     * Getter for a point's y coordinate
+     *
+     * @param i index of the point
+     * @return y coordinate
+     */
+    public int getY(int i) {
+        return ys.get(i);
+    }
+
+    /**
+     * Getter for the x coordinates
+     *
+     * @return read only view of the x coordinate of every point
+     */
+    public IntBuffer getXColumn() {
+        return column(xs);
+    }
+
+    /**
+     * Getter for the y coordinates
+     *
+     * @return read only view of the y coordinate of every point
+     */
+    public IntBuffer getYColumn() {
+        return column(ys);
+    }
+
+    /**
+     * Gets a point.
+     *
+     * @param i index of the point
+     * @return new Point with the stored coordinates
+     */
+    @Override
+    public Point get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: "
+                    + size);
+        }
+        return new Point(xs.get(i), ys.get(i));
+    }
+
+    /**
+     * Number of points stored.
+     *
+     * @return size of the data set
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Whether the columns are kept off the heap
+     *
+     * @return true if the columns are direct or mapped buffers
+     */
+    public boolean isOffHeap() {
+        return xs.isDirect();
+    }
+
+    /**
+     * Makes an empty column. An off heap column is direct memory, which
+     * counts against -XX:MaxDirectMemorySize rather than the heap and is
+     * given back when the column is collected; it holds at most
+     * Integer.MAX_VALUE / 4 coordinates, about 536 million points, since its
+     * size in bytes must fit in an int.
+     *
+     * @param capacity number of coordinates to make room for
+     * @param offHeap whether to allocate the column off the heap
+     * @return the column
+     */
+    static IntBuffer column(int capacity, boolean offHeap) {
+        if (offHeap) {
+            if (capacity > Integer.MAX_VALUE / 4) {
+                throw new IllegalArgumentException("Too many points for one "
+                        + "off heap column: " + capacity);
+            }
+            return ByteBuffer.allocateDirect(4 * capacity)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+        return IntBuffer.allocate(capacity);
+    }
+
+    /**
+     * Copies a column into a larger one, on or off the heap as it was.
+     *
+     * @param c column to copy
+     * @param capacity size of the new column
+     * @return the larger column
+     */
+    private IntBuffer grow(IntBuffer c, int capacity) {
+        if (c.hasArray()) {
+            return IntBuffer.wrap(Arrays.copyOf(c.array(), capacity));
+        }
+        IntBuffer grown = column(capacity, true);
+        grown.put(column(c));
+        return grown;
+    }
+
+    /**
+     * Views the stored part of a column.
+     *
+     * @param c column to view
+     * @return read only view of the first size entries
+     */
+    private IntBuffer column(IntBuffer c) {
+        IntBuffer view = c.asReadOnlyBuffer();
+        view.position(0);
+        view.limit(size);
+        return view;
+    }
+}
@@ -0,0 +1,238 @@
+package pointio;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Writes the results of finished runs on its own thread, so the clustering
+ * threads only hand a result over and go on with the next run. Each result
+ * is formatted as one line on the writing thread, written to the output file
+ * through one large buffer, and echoed to the console if asked for.
+ *
+ * A result is either the numbers of a line, which are written separated by
+ * spaces exactly as Double.toString would write them, or any other object,
+ * which is written as its toString. Results are written in the order they
+ * were handed over, from however many threads. A result must not change
+ * after it has been handed over.
+ */
+public class ResultSink implements Runnable, Closeable {
+
+    /**
+     * Number of bytes buffered before a write to the file.
+     */
+    private static final int BUFFER = 1 << 20;
+
+    /**
+     * Result that marks the end of the results.
+     */
+    private static final Object END = new Object();
+
+    /**
+     * Output file being written.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Whether each line is also printed to the console.
+     */
+    private final boolean echo;
+
+    /**
+     * Results handed over but not yet written, then the end marker.
+     */
+    private final BlockingQueue<Object> queue;
+
+    /**
+     * Bytes waiting to be written to the file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Turns lines into bytes, in the same charset a FileWriter would use.
+     */
+    private final CharsetEncoder encoder;
+
+    /**
+     * Line being formatted, reused for every line.
+     */
+    private final StringBuilder line;
+
+    /**
+     * Thread doing the writing, null until started.
+     */
+    private Thread writer;
+
+    /**
+     * Why writing stopped early, null if it did not.
+     */
+    private volatile IOException failure;
+
+    /**
+     * Creates a sink writing to a file, replacing anything in it.
+     *
+     * @param output file to write the results to
+     * @param e whether to also print each line to the console
+     * @throws IOException if the file cannot be opened
+     */
+    public ResultSink(File output, boolean e) throws IOException {
+        channel = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        echo = e;
+        queue = new LinkedBlockingQueue<>();
+        buffer = ByteBuffer.allocateDirect(BUFFER);
+        encoder = Charset.defaultCharset().newEncoder();
+        line = new StringBuilder();
+    }
+
+    /**
+     * Starts writing on a new thread.
+     */
+    public void start() {
+        writer = new Thread(this, "result-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Hands over a result to be written.
+     *
+     * @param result numbers of a line as a double[], or anything else to be
+     * written as its toString
+     */
+    public void submit(Object result) {
+        queue.add(result);
+    }
+
+    /**
+     * Writes every result handed over so far, then closes the file.
+     *
+     * @throws IOException if a result could not be written, or the file
+     * closed
+     */
+    @Override
+    public void close() throws IOException {
+        queue.add(END);
+        try {
+            if (writer != null) {
+                writer.join();
+            } else {
+                run();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing results", e);
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Formats and writes results until the end marker, then empties the
+     * buffer into the file.
+     */
+    @Override
+    public void run() {
+        try {
+            Object next;
+            while ((next = queue.take()) != END) {
+                line.setLength(0);
+                if (next instanceof double[]) {
+                    format((double[]) next);
+                } else {
+                    line.append(next);
+                }
+                if (echo) {
+                    System.out.println(line);
+                }
+                line.append(System.lineSeparator());
+                write();
+            }
+            drain();
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new IOException("Writing results failed: " + e, e);
+        } catch (InterruptedException e) {
+            failure = new IOException("Interrupted while writing results", e);
+        }
+    }
+
+    /**
+     * Formats numbers into the line, separated by spaces. Whole numbers the
+     * size of coordinates are written directly, and the rest through
+     * Double.toString, so the text is the same either way.
+     *
+     * @param values numbers to format
+     */
+    private void format(double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(' ');
+            }
+            double v = values[i];
+            //Double.toString writes whole numbers below 10^7 as n.0
+            if (v == (long) v && Math.abs(v) < 1e7
+                    && (v != 0 || 1 / v > 0)) {
+                line.append((long) v).append(".0");
+            } else {
+                line.append(v);
+            }
+        }
+    }
+
+    /**
+     * Encodes the line into the buffer, writing the buffer to the file each
+     * time it fills.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void write() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        CoderResult result;
+        encoder.reset();
+        while (true) {
+            result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes the buffer to the file and empties it.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,333 @@
+package pointio;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * A directory of binary snapshots of text data sets, so a data set is only
+ * parsed the first time it is used and mapped every time after.
+ *
+ * Snapshots are point files named after a hash of the source file's bytes,
+ * so the same data under two names, or a file that was touched without
+ * changing, shares one snapshot. Hashing still reads the whole source, so an
+ * index remembers each source's size, modification time and hash; while the
+ * size and time match, the hash is taken from the index without reading the
+ * source at all.
+ *
+ * The snapshots are kept under a size cap. Using a snapshot marks it as
+ * recently used, and the least recently used ones are deleted first when a
+ * new one would go over the cap.
+ */
+public class SnapshotCache {
+
+    /**
+     * Name of the index file in the cache directory.
+     */
+    private static final String INDEX = "index.properties";
+
+    /**
+     * Extension of snapshot files.
+     */
+    private static final String SNAPSHOT = ".pts";
+
+    /**
+     * Number of bytes hashed per mapping.
+     */
+    private static final long WINDOW = 1L << 28;
+
+    /**
+     * Directory the snapshots are kept in.
+     */
+    private final File dir;
+
+    /**
+     * Most bytes of snapshots to keep.
+     */
+    private final long cap;
+
+    /**
+     * Source of the last hash worked out, its size and modification time
+     * when it was hashed, and the hash, so a lookup that misses does not hash
+     * the source again to store it.
+     */
+    private File lastSource;
+    private String lastStamp, lastHash;
+
+    /**
+     * Creates a cache in a directory. The directory is made when the first
+     * snapshot is stored.
+     *
+     * @param d directory to keep the snapshots in
+     * @param c most bytes of snapshots to keep
+     */
+    public SnapshotCache(File d, long c) {
+        dir = d;
+        cap = c;
+    }
+
+    /**
+     * Finds the snapshot of a data set and marks it as recently used.
+     *
+     * @param source text data set
+     * @return the snapshot, or null if there is none
+     * @throws IOException if the cache or the source cannot be read
+     */
+    public File lookup(File source) throws IOException {
+        if (!dir.isDirectory()) {
+            return null;
+        }
+        File snapshot = new File(dir, hash(source) + SNAPSHOT);
+        if (!snapshot.isFile()) {
+            return null;
+        }
+        snapshot.setLastModified(System.currentTimeMillis());
+        return snapshot;
+    }
+
+    /**
+     * Stores a snapshot of a data set, then deletes the least recently used
+     * snapshots until the cache is back under its cap. A data set too large
+     * for the cache on its own is not stored.
+     *
+     * @param source text data set
+     * @param points points parsed from the data set
+     * @throws IOException if the cache cannot be written
+     */
+    public void store(File source, PointStore points) throws IOException {
+        //64 byte header, then 8 bytes a point
+        if (64 + 8L * points.size() > cap) {
+            return;
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot make " + dir);
+        }
+        String name = hash(source) + SNAPSHOT;
+        //a lookup on a cache with no directory yet could not index the hash
+        record(lastSource, lastStamp + " " + lastHash);
+        File snapshot = new File(dir, name);
+        if (!snapshot.isFile()) {
+            //written beside the snapshot and moved in, so a half written
+            //file is never taken for a snapshot
+            PointFile.write(points, snapshot);
+        }
+        evict(snapshot);
+    }
+
+    /**
+     * Fingerprints a data set by the hash its snapshot is named after, so
+     * files written from a data set can be matched back to it.
+     *
+     * @param source data set to fingerprint
+     * @param dir cache directory whose index may already hold the hash, or
+     * null to always hash the source
+     * @return 64 bit hash of the source's bytes
+     * @throws IOException if the source cannot be read
+     */
+    public static long fingerprint(File source, File dir) throws IOException {
+        if (dir == null) {
+            return contentHash(source.getCanonicalFile());
+        }
+        return Long.parseUnsignedLong(new SnapshotCache(dir, 0).hash(source),
+                16);
+    }
+
+    /**
+     * Works out the content hash of a source, from the index if the source
+     * has the same size and modification time as when it was hashed.
+     *
+     * @param source file to hash
+     * @return hash as 16 hex digits
+     * @throws IOException if the source or the index cannot be read
+     */
+    private String hash(File source) throws IOException {
+        File canonical = source.getCanonicalFile();
+        if (canonical.equals(lastSource)) {
+            return lastHash;
+        }
+
+        String stamp = canonical.length() + " " + canonical.lastModified();
+        Properties index = readIndex();
+        String entry = index.getProperty(canonical.getPath());
+        String hash;
+        if (entry != null && entry.startsWith(stamp + " ")) {
+            hash = entry.substring(stamp.length() + 1);
+        } else {
+            hash = String.format("%016x", contentHash(canonical));
+            if (dir.isDirectory()) {
+                record(canonical, stamp + " " + hash);
+            }
+        }
+        lastSource = canonical;
+        lastStamp = stamp;
+        lastHash = hash;
+        return hash;
+    }
+
+    /**
+     * Puts a source's size, modification time and hash in the index, unless
+     * the index already has them.
+     *
+     * @param source canonical source file
+     * @param entry size, modification time and hash of the source
+     * @throws IOException if the index cannot be read or written
+     */
+    private void record(File source, String entry) throws IOException {
+        Properties index = readIndex();
+        if (!entry.equals(index.getProperty(source.getPath()))) {
+            index.setProperty(source.getPath(), entry);
+            writeIndex(index);
+        }
+    }
+
+    /**
+     * Hashes every byte of a file, 8 bytes at a time.
+     *
+     * @param file file to hash
+     * @return 64 bit hash of the file's bytes and length
+     * @throws IOException if the file cannot be read
+     */
+    private static long contentHash(File file) throws IOException {
+        long h = 0x9E3779B97F4A7C15L;
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long pos = 0; pos < size; pos += WINDOW) {
+                ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY,
+                        pos, Math.min(WINDOW, size - pos))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                while (buf.remaining() >= 8) {
+                    h = mix(h ^ buf.getLong());
+                }
+                long tail = 0;
+                for (int shift = 0; buf.hasRemaining(); shift += 8) {
+                    tail |= (buf.get() & 0xFFL) << shift;
+                }
+                h = mix(h ^ tail);
+            }
+            h = mix(h ^ size);
+        }
+        return h;
+    }
+
+    /**
+     * Scrambles a 64 bit value, so every input bit affects every output bit.
+     *
+     * @param z value to scramble
+     * @return scrambled value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Deletes the least recently used snapshots until the cache is under
+     * its cap, keeping one snapshot whatever happens, and drops index
+     * entries whose snapshot is gone.
+     *
+     * @param keep snapshot to keep
+     * @throws IOException if the index cannot be written
+     */
+    private void evict(File keep) throws IOException {
+        File[] found = dir.listFiles();
+        List<File> snapshots = new ArrayList<>();
+        long total = 0;
+        if (found == null) {
+            return;
+        }
+        for (File f : found) {
+            if (f.isFile() && f.getName().endsWith(SNAPSHOT)) {
+                snapshots.add(f);
+                total += f.length();
+            }
+        }
+        snapshots.sort(new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+
+        for (File f : snapshots) {
+            if (total <= cap) {
+                break;
+            }
+            if (!f.equals(keep)) {
+                long length = f.length();
+                if (f.delete()) {
+                    total -= length;
+                }
+            }
+        }
+
+        Properties index = readIndex();
+        boolean changed = false;
+        for (String source : index.stringPropertyNames()) {
+            String[] entry = index.getProperty(source).split(" ");
+            if (!new File(dir, entry[entry.length - 1] + SNAPSHOT).isFile()) {
+                index.remove(source);
+                changed = true;
+            }
+        }
+        if (changed) {
+            writeIndex(index);
+        }
+    }
+
+    /**
+     * Reads the index.
+     *
+     * @return source paths mapped to their size, modification time and hash
+     * @throws IOException if the index cannot be read
+     */
+    private Properties readIndex() throws IOException {
+        Properties index = new Properties();
+        File file = new File(dir, INDEX);
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                index.load(in);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes the index, replacing the old one in one step.
+     *
+     * @param index source paths mapped to their size, modification time and
+     * hash
+     * @throws IOException if the index cannot be written
+     */
+    private void writeIndex(Properties index) throws IOException {
+        File partial = File.createTempFile("index", ".part", dir);
+        try {
+            try (OutputStream out = new FileOutputStream(partial)) {
+                index.store(out, "source = size modified hash");
+            }
+            Files.move(partial.toPath(), new File(dir, INDEX).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            partial.delete();
+        }
+    }
+}
@@ -2,16 +2,26 @@ package kmeans;
 
 import java.awt.Point;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.HashMap;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import pointio.GzipFeed;
+import pointio.LabelFile;
+import pointio.OffHeapStore;
+import pointio.PointFile;
+import pointio.PointParser;
+import pointio.PointPipe;
+import pointio.PointStore;
+import pointio.ResultSink;
+import pointio.SnapshotCache;
 
 /**
  * @author Alexis Varsava <av11sl@brocku.ca>
@@ -31,10 +41,147 @@ public class Kmeans {
      */
     private final int NUM_RUNS;
     
+    /**
+     * Whether the Dunn Index terms come from the kd-tree and the cluster
+     * diameters (true), or from an exact all-pairs pass on every core (false).
+     */
+    private final boolean INDEXED_DUNN;
+    
+    /**
+     * Whether each run's output line ends with its silhouette scores.
+     */
+    private final boolean SILHOUETTES;
+    
+    /**
+     * Number of points given a silhouette score in each run, 0 to score
+     * every point.
+     */
+    private final int SILHOUETTE_SAMPLE;
+    
+    /**
+     * Point files with more points than this are clustered out of core,
+     * streamed from the file on every iteration instead of loaded.
+     */
+    private final long OUT_OF_CORE_POINTS;
+    
+    /**
+     * Number of points mapped at a time when clustering out of core.
+     */
+    private final int WINDOW_POINTS;
+    
+    /**
+     * Whether a text data set is loaded off the heap, where its size does
+     * not add to garbage collection. Text data sets with more than
+     * OUT_OF_CORE_POINTS points stay there and are clustered out of core.
+     */
+    private final boolean OFF_HEAP;
+    
+    /**
+     * Whether a text data set is parsed on its own thread while the first
+     * run picks its starting centres and makes its first assignment pass.
+     * Only used for files small enough to always load, at 4 bytes or more
+     * per point. The file is parsed on one thread rather than in parallel
+     * chunks, and the first run is seeded from a sample of the points rather
+     * than from the whole data set, so a seed gives different results with
+     * and without it.
+     */
+    private final boolean PIPELINED;
+    
+    /**
+     * Number of points handed over at a time when pipelined.
+     */
+    private final int BATCH_POINTS;
+    
+    /**
+     * Most batches parsed ahead of the first run when pipelined.
+     */
+    private final int QUEUE_BATCHES;
+    
+    /**
+     * Number of points sampled for the first run's starting centres when
+     * pipelined.
+     */
+    private final int RESERVOIR;
+    
+    /**
+     * Number of points read before the first run picks its starting
+     * centres when pipelined.
+     */
+    private final int SEED_POINTS;
+    
+    /**
+     * Directory binary snapshots of text data sets are cached in, so a data
+     * set is only parsed by the first job that uses it; null to always parse.
+     */
+    private final File CACHE_DIR;
+    
+    /**
+     * Most bytes of snapshots to keep in the cache.
+     */
+    private final long CACHE_BYTES;
+    
+    /**
+     * Whether each run's results are also printed to the console.
+     */
+    private final boolean ECHO_RESULTS;
+    
+    /**
+     * Whether the winning run's label for every point is exported to a
+     * bit-packed label file next to the output file. A data set clustered
+     * out of core always has its labels exported, since they are not kept
+     * anywhere else.
+     */
+    private final boolean EXPORT_LABELS;
+    
     /**
      * Data taken in from the input file.
      */
-    private List<Point> D;
+    private PointStore D;
+    
+    /**
+     * Data set too large to load, read off the heap; null if D was loaded
+     * or the data set is streamed from a point file.
+     */
+    private OffHeapStore offHeap;
+    
+    /**
+     * Whether the data set is clustered out of core instead of loaded.
+     */
+    private boolean outOfCore;
+    
+    /**
+     * Whether the data set is loaded alongside the first run, and that run
+     * started from a sample of it.
+     */
+    private boolean pipelined;
+    
+    /**
+     * Snapshot cache, null if there is none.
+     */
+    private SnapshotCache cache;
+    
+    /**
+     * Point file the data set is read from: the input itself, or the cached
+     * snapshot of a text input. Null if the input is parsed.
+     */
+    private File points;
+    
+    /**
+     * Centres of the winning run so far, the one with the lowest SSE; null
+     * before the first run.
+     */
+    private int[] bestX, bestY;
+    
+    /**
+     * SSE of the winning run so far.
+     */
+    private double bestSSE = Double.POSITIVE_INFINITY;
+    
+    /**
+     * Number of runs printed so far, so each run's silhouette sample is
+     * drawn with its own seed.
+     */
+    private int runs;
     
     /**
      * Set of Clusters placed on the graph.
@@ -62,20 +209,15 @@ public class Kmeans {
     private static BufferedReader inputReader, fileReader;
     
     /**
-     * Writes to output file.
+     * Writes run results to the output file, off the clustering thread.
      */
-    private static BufferedWriter fileWriter;
+    private static ResultSink results;
     
     /**
      * Number of clusters to generate, and which distance measure to use.
      */
     private int k;
     
-    /**
-     * Keeps track of which points belong to which clusters
-     */
-    private HashMap<Point, Cluster> dict;
-    
     /**
      * Default constructor
      * 
@@ -84,30 +226,62 @@ public class Kmeans {
      */
     public Kmeans(){
         NUM_RUNS = 30;
-        D = new LinkedList<>();
+        INDEXED_DUNN = true;
+        SILHOUETTES = false;
+        SILHOUETTE_SAMPLE = 1000;
+        OUT_OF_CORE_POINTS = 50000000;
+        WINDOW_POINTS = 1 << 20;
+        OFF_HEAP = false;
+        PIPELINED = false;
+        BATCH_POINTS = 1 << 16;
+        QUEUE_BATCHES = 16;
+        RESERVOIR = 1 << 12;
+        SEED_POINTS = 1 << 20;
+        CACHE_DIR = new File("cache");
+        CACHE_BYTES = 4L << 30;
+        ECHO_RESULTS = true;
+        EXPORT_LABELS = false;
+        D = new PointStore();
         V = new LinkedList<>();
         oldV = new LinkedList<>();
-        dict = new HashMap<>();
         inputReader = new BufferedReader(new InputStreamReader(System.in));
         output = new File("outputs\\z.txt");
         try {
-            fileWriter = new BufferedWriter(new FileWriter(output));
+            results = new ResultSink(output, ECHO_RESULTS);
+            results.start();
         } catch (IOException ex) {
             System.err.println("Failed to create z.txt");
         }
         setFileReader();
-        setD();
+        setPoints();
+        pipelined = PIPELINED && points == null && isSmallText();
+        if(!pipelined){
+            setD();
+        }
         setK();
-        initCluster();
-        generator = new RNG(0, D.size());
-        for(int i = 0; i < NUM_RUNS; i++){
-            randCluster();
-            cluster();
+        if(outOfCore){
+            clusterOutOfCore();
+        } else {
+            initCluster();
+            boolean loaded = true;
+            if(pipelined){
+                generator = new RNG(0, 1);
+                loaded = setDPipelined();
+            } else {
+                generator = new RNG(0, D.size());
+            }
+            for(int i = 0; loaded && i < NUM_RUNS; i++){
+                if(!pipelined || i > 0){
+                    randCluster();
+                }
+                cluster(pipelined && i == 0);
+            }
+            exportLabels(null);
         }
         try{
             inputReader.close();
             fileReader.close();
-            fileWriter.close();
+            results.close();
         } catch(Exception e){
             System.err.println("Closing something failed.");
         }
@@ -142,25 +316,303 @@ public class Kmeans {
     }
 
     /**
-     * Load data from the file to the list
-     * 
-     * @return list of points from the file  
+     * Finds the point file to read the data set from: the input if it is
+     * one, or else the input's snapshot in the cache, if it has one.
+     */
+    private void setPoints(){
+        try {
+            if (PointFile.isPointFile(input)) {
+                points = input;
+                return;
+            }
+        } catch (IOException ex) {
+            return;
+        }
+        if (CACHE_DIR != null) {
+            cache = new SnapshotCache(CACHE_DIR, CACHE_BYTES);
+            try {
+                points = cache.lookup(input);
+            } catch (IOException ex) {
+                System.err.println("Snapshot cache unavailable: "
+                        + ex.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Load data from the file to the list. A binary point file is mapped as
+     * it is; in a text file, lines that are not points are reported and
+     * skipped, and a snapshot is cached for the next job. Data sets too large
+     * to load are left to be clustered out of core.
      */
     private void setD(){
-        String str;
-        String[] strarr;
+        try {
+            if (points != null) {
+                outOfCore = isLarge();
+                if (!outOfCore) {
+                    D = PointFile.open(points).getPoints();
+                }
+            } else if (OFF_HEAP) {
+                OffHeapStore parsed = PointParser.parseOffHeap(input);
+                if (parsed.size() > OUT_OF_CORE_POINTS) {
+                    offHeap = parsed;
+                    outOfCore = true;
+                } else {
+                    D = parsed.toPointStore();
+                    parsed.close();
+                    storeSnapshot();
+                }
+            } else {
+                D = PointParser.parse(input);
+                storeSnapshot();
+            }
+        } catch (IOException ex) {
+            System.err.println("Failed to read the data set: "
+                    + ex.getMessage());
+        }
+    }
+    
+    /**
+     * Checks whether the input is an uncompressed text data set that can
+     * always be loaded, even with the shortest possible lines.
+     * 
+     * @return true if the input can be loaded alongside the first run
+     */
+    private boolean isSmallText(){
+        try {
+            return !PointFile.isPointFile(input) && !GzipFeed.isGzip(input)
+                    && input.length() <= 4 * OUT_OF_CORE_POINTS;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+    
+    /**
+     * Loads the data set on a parser thread while the first run starts.
+     * Points are sampled as they arrive; once SEED_POINTS have been read
+     * (or the file ends first), k different points from the sample become
+     * the starting centres, and every point read from then on is given to
+     * its closest centre straight away. The first run's first assignment
+     * pass is done by the time the file is.
+     * 
+     * A snapshot is cached only once the whole file has been read. If the
+     * file cannot be read to the end, the failure is reported and nothing is
+     * clustered. If the sample does not hold k different points, the first
+     * run is started from the loaded data set like every other run.
+     * 
+     * @return true if the whole data set was loaded
+     */
+    private boolean setDPipelined(){
+        PointPipe pipe = new PointPipe(input, BATCH_POINTS, QUEUE_BATCHES);
+        List<PointStore> parts = new ArrayList<>();
+        Point[] sample = new Point[RESERVOIR];
+        long seen = 0;
+        int slot;
+        boolean seeded = false;
+        PointStore batch;
         
-        while(true){
-            try{
-                str = fileReader.readLine();
-                str = str.trim();
-                strarr = str.split("\\s+");
-                D.add(new Point(Integer.parseInt(strarr[0]), 
-                        Integer.parseInt(strarr[1])));
-            }catch(Exception e){
-                break;
+        pipe.start();
+        try {
+            while((batch = pipe.take()) != null){
+                parts.add(batch);
+                if(seeded){
+                    for(Point p : batch){
+                        addToClosestCluster(p);
+                    }
+                    continue;
+                }
+                //reservoir sampling, so every point read so far is equally
+                //likely to be in the sample
+                for(Point p : batch){
+                    slot = seen < RESERVOIR ? (int) seen
+                            : generator.getIntInRange((int) Math.min(
+                                    Integer.MAX_VALUE, seen + 1));
+                    if(slot < RESERVOIR){
+                        sample[slot] = p;
+                    }
+                    seen++;
+                }
+                if(seen >= SEED_POINTS){
+                    seeded = seedFrom(sample, (int) Math.min(seen, RESERVOIR),
+                            parts);
+                }
+            }
+            if(!seeded){
+                seeded = seedFrom(sample, (int) Math.min(seen, RESERVOIR),
+                        parts);
+            }
+        } catch (IOException ex) {
+            System.err.println("Failed to read the data set: "
+                    + ex.getMessage());
+            return false;
+        } catch (InterruptedException ex) {
+            pipe.stop();
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while reading the data set.");
+            return false;
+        }
+        D = PointStore.concat(parts, OFF_HEAP);
+        storeSnapshot();
+        if(!seeded){
+            pipelined = false;
+        }
+        return true;
+    }
+    
+    /**
+     * Caches a snapshot of the loaded data set, if there is a cache. Failing
+     * to store one is reported, and does not stop the job.
+     */
+    private void storeSnapshot(){
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.store(input, D);
+        } catch (IOException ex) {
+            System.err.println("Failed to store a snapshot: "
+                    + ex.getMessage());
+        }
+    }
+    
+    /**
+     * Places the clusters at k different points of a sample, then gives
+     * every point read so far to its closest cluster.
+     * 
+     * @param sample points sampled so far
+     * @param filled number of points in the sample
+     * @param parts batches read so far
+     * @return true if the sample had k different points
+     */
+    private boolean seedFrom(Point[] sample, int filled,
+            List<PointStore> parts){
+        List<Point> distinct = new ArrayList<>();
+        for(int i = 0; i < filled; i++){
+            if(!distinct.contains(sample[i])){
+                distinct.add(sample[i]);
+                if(distinct.size() == k){
+                    break;
+                }
+            }
+        }
+        if(distinct.size() < k){
+            return false;
+        }
+        
+        Point data;
+        List<Point> added = new LinkedList<>();
+        for(Cluster c : V){
+            while(true){
+                data = sample[generator.getIntInRange(filled)];
+                if(!added.contains(data)){
+                    c.setLoc(data);
+                    added.add(data);
+                    break;
+                }
+            }
+        }
+        for(PointStore part : parts){
+            for(Point p : part){
+                addToClosestCluster(p);
             }
         }
+        return true;
+    }
+    
+    /**
+     * Checks whether the point file is too large to load.
+     * 
+     * @return true if the data set should be clustered out of core
+     * @throws IOException if the point file cannot be read
+     */
+    private boolean isLarge() throws IOException{
+        try (FileChannel channel = FileChannel.open(points.toPath(),
+                StandardOpenOption.READ)) {
+            return PointFile.count(channel, points) > OUT_OF_CORE_POINTS;
+        }
+    }
+    
+    /**
+     * Runs every clustering run out of core, streaming the point file, or
+     * the data set held off the heap, on each iteration. The labels of the
+     * winning run are exported afterwards.
+     */
+    private void clusterOutOfCore(){
+        try (StreamingLloyd lloyd = offHeap != null
+                ? new StreamingLloyd(offHeap)
+                : new StreamingLloyd(points, WINDOW_POINTS)) {
+            generator = new RNG(0, lloyd.size());
+            for(int i = 0; i < NUM_RUNS; i++){
+                int[][] start = randStreamed(lloyd);
+                lloyd.run(start[0], start[1]);
+                printStreamed(lloyd);
+            }
+            exportLabels(lloyd);
+        } catch (IOException ex) {
+            System.err.println("Failed to cluster out of core: "
+                    + ex.getMessage());
+        } finally {
+            if (offHeap != null) {
+                offHeap.close();
+            }
+        }
+    }
+    
+    /**
+     * Picks k different points of a streamed data set as starting centres.
+     * 
+     * @param lloyd streamed data set
+     * @return x coordinates, then y coordinates, of the starting centres
+     * @throws IOException if a point cannot be read
+     */
+    private int[][] randStreamed(StreamingLloyd lloyd) throws IOException{
+        int[][] start = new int[2][k];
+        int[] p;
+        List<Point> added = new LinkedList<>();
+        while(added.size() < k){
+            p = lloyd.getPoint((long) generator.getRandom());
+            if(!added.contains(new Point(p[0], p[1]))){
+                start[0][added.size()] = p[0];
+                start[1][added.size()] = p[1];
+                added.add(new Point(p[0], p[1]));
+            }
+        }
+        return start;
+    }
+    
+    /**
+     * Hands the centres and scores of a streamed run to the result writer,
+     * in the same columns as printClusters. The Dunn Index and silhouettes
+     * need the points in memory, so they are NaN.
+     * 
+     * @param lloyd streamed data set, after a run
+     */
+    private void printStreamed(StreamingLloyd lloyd){
+        Validity validity = lloyd.getValidity();
+        int[] xs = lloyd.getXs(), ys = lloyd.getYs();
+        double[] line = new double[(SILHOUETTES ? 3 : 2) * k
+                + (SILHOUETTES ? 6 : 5)];
+        int i = 0;
+        
+        for(int c = 0; c < k; c++){
+            line[i++] = xs[c];
+            line[i++] = ys[c];
+        }
+        line[i++] = validity.getDunnIndex();
+        line[i++] = validity.getSSE();
+        line[i++] = validity.getCalinskiHarabasz();
+        line[i++] = validity.getDaviesBouldin();
+        line[i++] = validity.getBIC();
+        while(i < line.length){
+            line[i++] = Double.NaN;
+        }
+        results.submit(line);
+        
+        if(validity.getSSE() < bestSSE){
+            bestSSE = validity.getSSE();
+            bestX = xs;
+            bestY = ys;
+        }
     }
     
     /**
@@ -213,32 +665,91 @@ public class Kmeans {
     
     /**
      * Run loop for clustering.
+     * 
+     * @param assigned whether the first assignment pass has already been
+     * made
      */
-    private void cluster(){
+    private void cluster(boolean assigned){
         while(true){
-            dict.clear();
-            for(Point dataPoint : D){
-                addToClosestCluster(dataPoint);
-            }
+            moveCentres(!assigned);
+            assigned = false;
             
-            for(Cluster c : V){
-                if(!c.getNeighbourhood().isEmpty()){
-                    c.calcNewLoc();
-                }
-                c.clearNeighbourhood();
-            }
             if(compareSets(V, oldV)) break;
             
             oldV = cloneV();
         }
         
-        for(Point dataPoint : D){
-            addToClosestCluster(dataPoint);
+        Cluster[] clusters = V.toArray(new Cluster[V.size()]);
+        int[][] centres = getCentres();
+        IntBuffer xs = D.getXColumn(), ys = D.getYColumn();
+        for(int i = 0; i < D.size(); i++){
+            clusters[closest(xs.get(i), ys.get(i), centres)]
+                    .addNeighbour(D.get(i));
         }
         
         printClusters();
     }
     
+    /**
+     * One pass of Lloyd's loop: gives every point its closest centre and
+     * moves each centre to the truncated mean of its points, as calcNewLoc
+     * does, then empties the neighbourhoods. The coordinates are read
+     * straight from the columns of D, so no Point is made. Points already in
+     * a neighbourhood count towards its centre as well, as they always have
+     * in this loop. A centre with no points stays where it is.
+     * 
+     * @param assign whether to assign the points, or only move the centres
+     * to the neighbourhoods they already have
+     */
+    private void moveCentres(boolean assign){
+        int[][] centres = getCentres();
+        int[] counts = new int[centres[0].length];
+        double[] sumX = new double[counts.length];
+        double[] sumY = new double[counts.length];
+        IntBuffer xs = D.getXColumn(), ys = D.getYColumn();
+        int x, y, c = 0;
+        
+        for(Cluster cluster : V){
+            counts[c] = cluster.getNeighbourhood().size();
+            sumX[c] = cluster.getSumX();
+            sumY[c++] = cluster.getSumY();
+        }
+        for(int i = 0; assign && i < D.size(); i++){
+            x = xs.get(i);
+            y = ys.get(i);
+            c = closest(x, y, centres);
+            counts[c]++;
+            sumX[c] += x;
+            sumY[c] += y;
+        }
+        
+        c = 0;
+        for(Cluster cluster : V){
+            if(counts[c] > 0){
+                cluster.setLoc((int)sumX[c]/counts[c],
+                        (int)sumY[c]/counts[c]);
+            }
+            cluster.clearNeighbourhood();
+            c++;
+        }
+    }
+    
+    /**
+     * Copies the cluster centres into arrays.
+     * 
+     * @return x coordinate of each centre, then y coordinate of each centre
+     */
+    private int[][] getCentres(){
+        int[][] centres = new int[2][V.size()];
+        int c = 0;
+        for(Cluster cluster : V){
+            centres[0][c] = cluster.getLoc().x;
+            centres[1][c] = cluster.getLoc().y;
+            c++;
+        }
+        return centres;
+    }
+    
     /**
      * Not sure if regular copying of a LinkedList is deep enough for my 
      * purposes, so i'll just do it manually
@@ -300,7 +811,6 @@ public class Kmeans {
         }
         clus = findClusterFromPoint(shortP);
         clus.addNeighbour(p);
-        dict.put(p, clus);
     }
     
     
@@ -321,98 +831,96 @@ public class Kmeans {
     }
     
     /**
-     * Prints details of cluster to the console and to the output file
+     * Hands the centres and scores of the run to the result writer, to be
+     * printed to the console and to the output file
      */
     private void printClusters(){
+        Validity validity = new Validity(V, INDEXED_DUNN);
+        double[] line = new double[(SILHOUETTES ? 3 : 2) * V.size()
+                + (SILHOUETTES ? 6 : 5)];
+        int i = 0;
+        
         for(Cluster c : V){
-            System.out.print(c.toString() + " ");
-            try {
-                fileWriter.write(c.toString() + " ");
-            } catch (IOException ex) {
-                System.err.println("Failed to write line to file");
+            line[i++] = c.getLoc().getX();
+            line[i++] = c.getLoc().getY();
+        }
+        line[i++] = validity.getDunnIndex();
+        line[i++] = validity.getSSE();
+        line[i++] = validity.getCalinskiHarabasz();
+        line[i++] = validity.getDaviesBouldin();
+        line[i++] = validity.getBIC();
+        if(SILHOUETTES){
+            Silhouette silhouette = new Silhouette(V, SILHOUETTE_SAMPLE,
+                    generator.getSeed() + runs++);
+            line[i++] = silhouette.getOverall();
+            for(int j = 0; j < V.size(); j++){
+                line[i++] = silhouette.getCluster(j);
             }
         }
-        System.out.print(getDunnIndex());
-        try {
-                fileWriter.write(Double.toString(getDunnIndex()));
-            } catch (IOException ex) {
-                System.err.println("Failed to write line to file");
+        results.submit(line);
+        
+        if(validity.getSSE() < bestSSE){
+            bestSSE = validity.getSSE();
+            bestX = new int[V.size()];
+            bestY = new int[V.size()];
+            i = 0;
+            for(Cluster c : V){
+                bestX[i] = c.getLoc().x;
+                bestY[i++] = c.getLoc().y;
             }
-        System.out.println();
-        try {
-            fileWriter.newLine();
-        } catch (IOException ex) {
-            System.err.println("Somehow, writing a newline failed.");
         }
     }
     
     /**
-     * Calculates Dunn Index of the current set of clusters
-     * @return Dunn index
+     * Exports the label of every point in the winning run to a label file
+     * next to the output file, always when clustering out of core and
+     * otherwise if asked for.
+     * 
+     * @param lloyd streamed data set, or null if the data set was loaded
      */
-    private double getDunnIndex(){
-        double dmin, dmax;
-        
-        dmin = getDMin();
-        dmax = getDMax();
-        
-        if(dmax == 0) return 0.0;
-        return dmin/dmax;
-    }
-    
-    
-    /**
-     * Calculates first term for Dunn Index
-     * @return smallest distance between objects from 2 different clusters
-     */
-    private double getDMin(){
-        Cluster a = null, b = null;
-        double shortest = Double.POSITIVE_INFINITY, dist = 0.0;
-        for(Point p1 : D){
-            for(Point p2 : D){
-                if(!p1.equals(p2)){
-                    a = getCluster(p1);
-                    b = getCluster(p2);
-                    if (!a.equals(b)){
-                        dist = calcDist(a.getLoc(), b.getLoc());
-                    
-                        if(dist < shortest){
-                            shortest = dist;
-                        }
-                    }
+    private void exportLabels(StreamingLloyd lloyd){
+        if((!EXPORT_LABELS && lloyd == null) || bestX == null){
+            return;
+        }
+        File file = new File("outputs\\" + input.getName().split("\\.")[0]
+                + "_" + k + ".lbl");
+        long n = lloyd != null ? lloyd.size() : D.size();
+        try (LabelFile labels = LabelFile.create(file, n,
+                SnapshotCache.fingerprint(input, CACHE_DIR), bestX, bestY)) {
+            if(lloyd != null){
+                lloyd.label(labels);
+            } else {
+                int[][] centres = {bestX, bestY};
+                IntBuffer xs = D.getXColumn(), ys = D.getYColumn();
+                for(int i = 0; i < D.size(); i++){
+                    labels.add(closest(xs.get(i), ys.get(i), centres));
                 }
             }
+        } catch (IOException ex) {
+            System.err.println("Failed to export labels: " + ex.getMessage());
         }
-        if(shortest == Double.POSITIVE_INFINITY) {
-            System.out.println("say whaat");
-        }
-        return shortest;
-    }
-    
-    private Cluster getCluster(Point p){
-        return dict.get(p);
     }
     
     /**
-     * Calculates second term for Dunn Index
-     * @return largest distance between 2 objects in the same cluster
+     * Finds the centre closest to a point, the first one on a tie.
+     * 
+     * @param x x coordinate of the point to place
+     * @param y y coordinate of the point to place
+     * @param centres x coordinate of each centre, then y coordinate of each
+     * centre
+     * @return position of the closest centre
      */
-    private double getDMax(){
-        double largest = 0.0, dist;
-        
-        for(Cluster c : V){
-            for(Point p1 : c.getNeighbourhood()){
-                for(Point p2 : c.getNeighbourhood()){
-                    dist = calcDist(p1, p2);
-                    
-                    if(dist > largest){
-                        largest = dist;
-                    }
-                }
+    private int closest(int x, int y, int[][] centres){
+        int best = 0;
+        double d, shortest = Double.POSITIVE_INFINITY;
+        for(int c = 0; c < centres[0].length; c++){
+            d = calcDist(centres[0][c], centres[1][c], x, y);
+            if(d < shortest){
+                shortest = d;
+                best = c;
             }
         }
-        
-        return largest;
+        return best;
     }
     
     /**
@@ -437,6 +945,20 @@ public class Kmeans {
                 + Math.pow(a.getY() - b.getY(), 2));
     }
     
+    /**
+     * Calculates the same distance as calcDist, from bare coordinates
+     * 
+     * @param ax x coordinate of the first point
+     * @param ay y coordinate of the first point
+     * @param bx x coordinate of the second point
+     * @param by y coordinate of the second point
+     * @return Distance between the two points
+     */
+    private double calcDist(int ax, int ay, int bx, int by){
+        return Math.sqrt(Math.pow((double)ax - bx, 2) 
+                + Math.pow((double)ay - by, 2));
+    }
+    
     
     /**
      * Main method; launches application
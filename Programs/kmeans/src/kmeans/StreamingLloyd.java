@@ -0,0 +1,325 @@
+package kmeans;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import pointio.LabelFile;
+import pointio.OffHeapStore;
+import pointio.PointFile;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Lloyd's k-means over a point file that is never loaded, or over an off
+ * heap store. Every iteration reads the file a window of points at a time (or
+ * views the store a segment at a time), gives each point its closest centre,
+ * and adds it to that centre's sums; the new centres come from the sums
+ * alone, so the heap holds O(k) numbers however large the data set is, and
+ * the page cache does the rest. Each window is mapped the first time it is
+ * read and the mapping kept for every later pass and run; a mapping only
+ * takes address space, not heap. Labels are not kept: label() hands them to
+ * a label file for the centres of the run that is exported.
+ *
+ * Centres move exactly as in the in-memory loop: each is the truncated mean
+ * of its points, an empty cluster stays where it is, ties go to the first
+ * centre, and the loop stops once no centre moves. Coordinate sums are kept
+ * in longs, so they are exact as long as a cluster's sum stays under 2^63.
+ */
+public class StreamingLloyd implements Closeable {
+
+    /**
+     * Point file being clustered, null when clustering a store.
+     */
+    private final FileChannel data;
+
+    /**
+     * Store being clustered, null when clustering a point file.
+     */
+    private final OffHeapStore store;
+
+    /**
+     * Number of points in the data set.
+     */
+    private final long n;
+
+    /**
+     * Number of points mapped at a time.
+     */
+    private final int window;
+
+    /**
+     * Mapped windows of the point file, x coordinates then y coordinates,
+     * each mapped the first time it is read.
+     */
+    private final IntBuffer[][] windows;
+
+    /**
+     * Current centres.
+     */
+    private int[] xs, ys;
+
+    /**
+     * Number of points in each cluster after the last pass.
+     */
+    private long[] counts;
+
+    /**
+     * Coordinate sums of each cluster after the last pass.
+     */
+    private long[] sumX, sumY;
+
+    /**
+     * Sum of x^2 + y^2 over each cluster after the last pass.
+     */
+    private double[] sumSq;
+
+    /**
+     * Number of passes over the data in the last run.
+     */
+    private int iterations;
+
+    /**
+     * Opens a point file for clustering.
+     *
+     * @param file point file to cluster
+     * @param w number of points to map at a time
+     * @throws IOException if the file cannot be opened, or is not a point
+     * file
+     */
+    public StreamingLloyd(File file, int w) throws IOException {
+        data = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        store = null;
+        try {
+            n = PointFile.count(data, file);
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+        window = Math.max(1, Math.min(w, Integer.MAX_VALUE / 4));
+        windows = new IntBuffer[Math.toIntExact((n + window - 1) / window)][];
+    }
+
+    /**
+     * Sets up clustering of an off heap store. The store stays open when
+     * this is closed.
+     *
+     * @param points store to cluster
+     */
+    public StreamingLloyd(OffHeapStore points) {
+        data = null;
+        store = points;
+        n = points.size();
+        window = Integer.MAX_VALUE / 4;
+        windows = null;
+    }
+
+    /**
+     * Getter for the number of points
+     *
+     * @return size of the data set
+     */
+    public long size() {
+        return n;
+    }
+
+    /**
+     * Reads one point.
+     *
+     * @param i index of the point
+     * @return x and y coordinates of the point
+     * @throws IOException if the point cannot be read
+     */
+    public int[] getPoint(long i) throws IOException {
+        if (store != null) {
+            return new int[]{store.getX(i), store.getY(i)};
+        }
+        IntBuffer[] p = window(i - i % window);
+        int offset = (int) (i % window);
+        return new int[]{p[0].get(offset), p[1].get(offset)};
+    }
+
+    /**
+     * Views a run of points: from a point to the end of its segment in a
+     * store, or the whole window starting at a point of a point file.
+     *
+     * @param from index of the first point, the start of a window when
+     * reading a point file
+     * @return x coordinates, then y coordinates, of the run
+     * @throws IOException if the window cannot be mapped
+     */
+    private IntBuffer[] window(long from) throws IOException {
+        if (store != null) {
+            return store.window(from);
+        }
+        int w = (int) (from / window);
+        if (windows[w] == null) {
+            windows[w] = PointFile.window(data, n, from,
+                    (int) Math.min(window, n - from));
+        }
+        return windows[w];
+    }
+
+    /**
+     * Runs Lloyd's iterations from a set of starting centres until no centre
+     * moves.
+     *
+     * @param startX x coordinate of each starting centre
+     * @param startY y coordinate of each starting centre
+     * @throws IOException if the data cannot be read
+     */
+    public void run(int[] startX, int[] startY) throws IOException {
+        int k = startX.length, x, y;
+        boolean moved = true;
+        xs = startX.clone();
+        ys = startY.clone();
+        counts = new long[k];
+        sumX = new long[k];
+        sumY = new long[k];
+        sumSq = new double[k];
+        iterations = 0;
+
+        while (moved) {
+            pass();
+            iterations++;
+            moved = false;
+            for (int c = 0; c < k; c++) {
+                if (counts[c] == 0) {
+                    continue;
+                }
+                x = (int) (sumX[c] / counts[c]);
+                y = (int) (sumY[c] / counts[c]);
+                if (x != xs[c] || y != ys[c]) {
+                    xs[c] = x;
+                    ys[c] = y;
+                    moved = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives every point its closest centre, window by window, collecting
+     * each cluster's sums.
+     *
+     * @throws IOException if the data cannot be read
+     */
+    private void pass() throws IOException {
+        int length;
+        Arrays.fill(counts, 0);
+        Arrays.fill(sumX, 0);
+        Arrays.fill(sumY, 0);
+        Arrays.fill(sumSq, 0.0);
+
+        for (long from = 0; from < n; from += length) {
+            IntBuffer[] points = window(from);
+            length = points[0].remaining();
+            for (int i = 0; i < length; i++) {
+                int x = points[0].get(i), y = points[1].get(i);
+                int c = closest(x, y);
+                counts[c]++;
+                sumX[c] += x;
+                sumY[c] += y;
+                sumSq[c] += (double) x * x + (double) y * y;
+            }
+        }
+    }
+
+    /**
+     * Gives every point, window by window, to a label file.
+     *
+     * @param out label file to write the points' labels to
+     * @throws IOException if the data cannot be read
+     */
+    public void label(LabelFile out) throws IOException {
+        int length;
+        for (long from = 0; from < n; from += length) {
+            IntBuffer[] points = window(from);
+            length = points[0].remaining();
+            for (int i = 0; i < length; i++) {
+                out.add(closest(points[0].get(i), points[1].get(i)));
+            }
+        }
+    }
+
+    /**
+     * Finds the centre closest to a point, the first one on a tie.
+     *
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @return position of the closest centre
+     */
+    private int closest(int x, int y) {
+        int best = 0;
+        double dx, dy, d, shortest = Double.POSITIVE_INFINITY;
+        for (int c = 0; c < xs.length; c++) {
+            dx = (double) x - xs[c];
+            dy = (double) y - ys[c];
+            d = dx * dx + dy * dy;
+            if (d < shortest) {
+                shortest = d;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Getter for the final centres' x coordinates
+     *
+     * @return x coordinate of each centre
+     */
+    public int[] getXs() {
+        return xs.clone();
+    }
+
+    /**
+     * Getter for the final centres' y coordinates
+     *
+     * @return y coordinate of each centre
+     */
+    public int[] getYs() {
+        return ys.clone();
+    }
+
+    /**
+     * Getter for the number of passes over the data in the last run
+     *
+     * @return iterations of the last run
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Scores the final clusters from their sums.
+     *
+     * @return validity measures, with the Dunn Index NaN
+     */
+    public Validity getValidity() {
+        double[] sx = new double[counts.length];
+        double[] sy = new double[counts.length];
+        for (int c = 0; c < counts.length; c++) {
+            sx[c] = sumX[c];
+            sy[c] = sumY[c];
+        }
+        return new Validity(counts, sx, sy, sumSq);
+    }
+
+    /**
+     * Closes the point file, if any.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (data != null) {
+            data.close();
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package kmedians;
+
+import java.awt.Point;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import pointio.PointStore;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * CLARA (Clustering LARge Applications) medoid search. Draws several small
+ * samples of the data, runs PAM on each sample in parallel, then scores every
+ * candidate set of medoids against the full data set in one shared pass and
+ * keeps the cheapest.
+ *
+ * The data set is read through the columns of its store and never copied:
+ * only the sampled coordinates and their distance matrices are allocated, so
+ * memory stays bounded by the sample size. Samples are drawn with
+ * replacement, so they may repeat a location; PAM never puts two medoids on
+ * the same spot, and a sample with fewer than k different locations is
+ * passed over.
+ */
+public class Clara {
+
+    /**
+     * Number of points each worker scores at once in the full-data pass.
+     */
+    private static final int SCORE_BLOCK = 1 << 14;
+
+    /**
+     * Coordinates of the full data set.
+     */
+    private final IntBuffer xs, ys;
+
+    /**
+     * Number of points in the data set.
+     */
+    private final int size;
+
+    /**
+     * Number of medoids to find.
+     */
+    private final int k;
+
+    /**
+     * Number of samples to draw, and how many points each one holds.
+     */
+    private final int numSamples, sampleSize;
+
+    /**
+     * Creates a new CLARA search over a data set.
+     *
+     * @param data points to find medoids for
+     * @param n number of medoids to find
+     * @param samples number of samples to draw per search
+     * @param size number of points in each sample
+     */
+    public Clara(PointStore data, int n, int samples, int size) {
+        xs = data.getXColumn();
+        ys = data.getYColumn();
+        this.size = data.size();
+        k = n;
+        numSamples = samples;
+        sampleSize = Math.max(n, Math.min(size, this.size));
+    }
+
+    /**
+     * Draws the samples, runs PAM on each one and returns the medoids that
+     * cost the least over the whole data set.
+     *
+     * @param generator RNG used to draw the samples
+     * @return list of k medoids, or null if no sample held k different
+     * locations
+     */
+    public List<Point> findMedoids(RNG generator) {
+        List<PamTask> tasks = new ArrayList<>();
+        List<int[][]> found = new ArrayList<>();
+        int best = 0;
+
+        //samples are drawn up front so the result only depends on the seed
+        for (int s = 0; s < numSamples; s++) {
+            tasks.add(new PamTask(drawSample(generator)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        for (PamTask task : tasks) {
+            if (task.join() != null) {
+                found.add(task.join());
+            }
+        }
+        if (found.isEmpty()) {
+            return null;
+        }
+
+        int[][][] medoids = found.toArray(new int[found.size()][][]);
+        double[] cost = ForkJoinPool.commonPool().invoke(
+                new ScoreTask(medoids, 0, size));
+        for (int s = 1; s < medoids.length; s++) {
+            if (cost[s] < cost[best]) {
+                best = s;
+            }
+        }
+
+        List<Point> result = new ArrayList<>();
+        for (int i = 0; i < k; i++) {
+            result.add(new Point(medoids[best][0][i], medoids[best][1][i]));
+        }
+        return result;
+    }
+
+    /**
+     * Copies sampleSize points drawn at random, with replacement, out of the
+     * data set.
+     *
+     * @param generator RNG used to pick indices
+     * @return x coordinate of each sampled point, then y coordinate of each
+     */
+    private int[][] drawSample(RNG generator) {
+        int[][] sample = new int[2][sampleSize];
+        int rand;
+
+        for (int i = 0; i < sampleSize; i++) {
+            rand = generator.getIntInRange(size);
+            sample[0][i] = xs.get(rand);
+            sample[1][i] = ys.get(rand);
+        }
+        return sample;
+    }
+
+    /**
+     * Calculates Manhattan distance between two points
+     *
+     * @param ax x coordinate of point a
+     * @param ay y coordinate of point a
+     * @param bx x coordinate of point b
+     * @param by y coordinate of point b
+     * @return Manhattan distance between points a and b
+     */
+    private static double manDist(int ax, int ay, int bx, int by) {
+        return Math.abs((double) ax - bx) + Math.abs((double) ay - by);
+    }
+
+    /**
+     * Runs PAM (BUILD then SWAP) on a single sample.
+     */
+    private class PamTask extends RecursiveTask<int[][]> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Coordinates of the sampled points, x then y.
+         */
+        private final int[][] sample;
+
+        /**
+         * Creates a PAM run over a sample.
+         *
+         * @param s coordinates of the sampled points, x then y
+         */
+        PamTask(int[][] s) {
+            sample = s;
+        }
+
+        /**
+         * Finds k medoids of the sample, no two at the same location.
+         *
+         * @return coordinates of the medoids, x then y, or null if the sample
+         * has fewer than k different locations
+         */
+        @Override
+        protected int[][] compute() {
+            int m = sample[0].length;
+            double[][] dist = new double[m][m];
+            for (int i = 0; i < m; i++) {
+                for (int j = i + 1; j < m; j++) {
+                    dist[i][j] = dist[j][i] = manDist(sample[0][i],
+                            sample[1][i], sample[0][j], sample[1][j]);
+                }
+            }
+
+            int[] med = build(dist);
+            if (med == null) {
+                return null;
+            }
+            swap(dist, med);
+
+            int[][] result = new int[2][k];
+            for (int i = 0; i < k; i++) {
+                result[0][i] = sample[0][med[i]];
+                result[1][i] = sample[1][med[i]];
+            }
+            return result;
+        }
+
+        /**
+         * Greedily picks the medoids that reduce the sample cost the most,
+         * passing over points at the location of a medoid already picked.
+         *
+         * @param dist distance matrix of the sample
+         * @return sample indices of the initial medoids, or null if the
+         * sample has fewer than k different locations
+         */
+        private int[] build(double[][] dist) {
+            int m = dist.length;
+            int[] med = new int[k];
+            boolean[] isMed = new boolean[m];
+            double[] near = new double[m];
+            Arrays.fill(near, Double.POSITIVE_INFINITY);
+
+            for (int c = 0; c < k; c++) {
+                int pick = -1;
+                double bestCost = Double.POSITIVE_INFINITY, cost;
+                for (int h = 0; h < m; h++) {
+                    if (isMed[h] || near[h] == 0.0) {
+                        continue;
+                    }
+                    cost = 0.0;
+                    for (int j = 0; j < m; j++) {
+                        cost += Math.min(near[j], dist[h][j]);
+                    }
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        pick = h;
+                    }
+                }
+                if (pick < 0) {
+                    return null;
+                }
+                med[c] = pick;
+                isMed[pick] = true;
+                for (int j = 0; j < m; j++) {
+                    near[j] = Math.min(near[j], dist[pick][j]);
+                }
+            }
+            return med;
+        }
+
+        /**
+         * Swaps medoids with non-medoids while doing so lowers the cost,
+         * never moving a medoid onto the location of another.
+         *
+         * @param dist distance matrix of the sample
+         * @param med sample indices of the medoids, updated in place
+         */
+        private void swap(double[][] dist, int[] med) {
+            int m = dist.length;
+            boolean[] isMed = new boolean[m];
+            double[] near = new double[m], second = new double[m];
+            int[] nearest = new int[m];
+
+            for (int i : med) {
+                isMed[i] = true;
+            }
+            while (true) {
+                //distance to the closest and second closest medoid
+                for (int j = 0; j < m; j++) {
+                    near[j] = second[j] = Double.POSITIVE_INFINITY;
+                    for (int i = 0; i < k; i++) {
+                        double d = dist[med[i]][j];
+                        if (d < near[j]) {
+                            second[j] = near[j];
+                            near[j] = d;
+                            nearest[j] = i;
+                        } else if (d < second[j]) {
+                            second[j] = d;
+                        }
+                    }
+                }
+
+                double bestDelta = 0.0, delta;
+                int bestI = -1, bestH = -1;
+                for (int i = 0; i < k; i++) {
+                    for (int h = 0; h < m; h++) {
+                        //h may not share a location with a medoid but i
+                        if (isMed[h] || (nearest[h] == i ? second[h]
+                                : near[h]) == 0.0) {
+                            continue;
+                        }
+                        delta = 0.0;
+                        for (int j = 0; j < m; j++) {
+                            if (nearest[j] == i) {
+                                delta += Math.min(dist[h][j], second[j])
+                                        - near[j];
+                            } else if (dist[h][j] < near[j]) {
+                                delta += dist[h][j] - near[j];
+                            }
+                        }
+                        if (delta < bestDelta) {
+                            bestDelta = delta;
+                            bestI = i;
+                            bestH = h;
+                        }
+                    }
+                }
+                if (bestI < 0) {
+                    break;
+                }
+                isMed[med[bestI]] = false;
+                isMed[bestH] = true;
+                med[bestI] = bestH;
+            }
+        }
+    }
+
+    /**
+     * Scores every candidate medoid set over a range of the full data set,
+     * splitting the range in half until it is small enough to do directly.
+     */
+    private class ScoreTask extends RecursiveTask<double[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Coordinates of each candidate medoid set, x then y.
+         */
+        private final int[][][] medoids;
+
+        /**
+         * Range of data indices to score, from inclusive and to exclusive.
+         */
+        private final int from, to;
+
+        /**
+         * Creates a scoring task over a range of the data.
+         *
+         * @param med candidate medoid sets
+         * @param f first data index to score
+         * @param t one past the last data index to score
+         */
+        ScoreTask(int[][][] med, int f, int t) {
+            medoids = med;
+            from = f;
+            to = t;
+        }
+
+        /**
+         * Sums each point's distance to its closest medoid, per candidate set.
+         *
+         * @return total cost of each candidate set over the range
+         */
+        @Override
+        protected double[] compute() {
+            if (to - from > SCORE_BLOCK) {
+                int mid = (from + to) >>> 1;
+                ScoreTask left = new ScoreTask(medoids, from, mid);
+                left.fork();
+                double[] right = new ScoreTask(medoids, mid, to).compute();
+                double[] cost = left.join();
+                for (int s = 0; s < cost.length; s++) {
+                    cost[s] += right[s];
+                }
+                return cost;
+            }
+
+            double[] cost = new double[medoids.length];
+            int x, y;
+            for (int p = from; p < to; p++) {
+                x = xs.get(p);
+                y = ys.get(p);
+                for (int s = 0; s < medoids.length; s++) {
+                    double shortest = Double.POSITIVE_INFINITY;
+                    for (int m = 0; m < k; m++) {
+                        shortest = Math.min(shortest, manDist(x, y,
+                                medoids[s][0][m], medoids[s][1][m]));
+                    }
+                    cost[s] += shortest;
+                }
+            }
+            return cost;
+        }
+    }
+}
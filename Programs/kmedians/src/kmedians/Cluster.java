@@ -25,6 +25,12 @@ public class Cluster {
      */
     private List<Point> neighbours;
     
+    /**
+     * Sums of the x coordinates, y coordinates and squared lengths of the
+     * neighbourhood, kept up to date as points are added.
+     */
+    private double sumX, sumY, sumSq;
+    
     /**
      * Default constructor.
      * 
@@ -45,6 +51,9 @@ public class Cluster {
     public Cluster(Cluster c){
         location = new Point(c.getLoc());
         neighbours = new LinkedList<>(c.getNeighbourhood());
+        sumX = c.getSumX();
+        sumY = c.getSumY();
+        sumSq = c.getSumSq();
     }
     
     /**
@@ -136,6 +145,10 @@ public class Cluster {
      */
     public void setNeighbourhood(List<Point> l){
         neighbours = l;
+        sumX = sumY = sumSq = 0.0;
+        for(Point p : l){
+            addToSums(p);
+        }
     }
     
     /**
@@ -145,6 +158,42 @@ public class Cluster {
      */
     public void addNeighbour(Point p){
         neighbours.add(p);
+        addToSums(p);
+    }
+    
+    /**
+     * Adds a point's coordinates to the neighbourhood sums.
+     * 
+     * @param p Point to add to the sums
+     */
+    private void addToSums(Point p){
+        sumX += p.getX();
+        sumY += p.getY();
+        sumSq += p.getX() * p.getX() + p.getY() * p.getY();
+    }
+    
+    /**
+     * Returns the sum of the neighbourhood's x coordinates
+     * @return sum of x coordinates
+     */
+    public double getSumX(){
+        return sumX;
+    }
+    
+    /**
+     * Returns the sum of the neighbourhood's y coordinates
+     * @return sum of y coordinates
+     */
+    public double getSumY(){
+        return sumY;
+    }
+    
+    /**
+     * Returns the sum of x^2 + y^2 over the neighbourhood
+     * @return sum of squared lengths
+     */
+    public double getSumSq(){
+        return sumSq;
     }
     
     /**
@@ -152,6 +201,7 @@ public class Cluster {
      */
     public void clearNeighbourhood(){
         neighbours = new LinkedList<>();
+        sumX = sumY = sumSq = 0.0;
     }
     
     /**
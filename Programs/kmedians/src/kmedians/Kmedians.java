@@ -2,16 +2,21 @@ package kmedians;
 
 import java.awt.Point;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.HashMap;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import pointio.LabelFile;
+import pointio.PointFile;
+import pointio.PointParser;
+import pointio.PointStore;
+import pointio.ResultSink;
+import pointio.SnapshotCache;
 
 /**
  * @author Alexis Varsava <av11sl@brocku.ca>
@@ -29,10 +34,67 @@ public class Kmedians {
      */
     private final int NUM_RUNS;
     
+    /**
+     * Whether the Dunn Index terms come from the kd-tree and the cluster
+     * diameters (true), or from an exact all-pairs pass on every core (false).
+     */
+    private final boolean INDEXED_DUNN;
+    
+    /**
+     * Whether each run's output line ends with its silhouette scores.
+     */
+    private final boolean SILHOUETTES;
+    
+    /**
+     * Number of points given a silhouette score in each run, 0 to score
+     * every point.
+     */
+    private final int SILHOUETTE_SAMPLE;
+    
+    /**
+     * Whether a text data set is loaded into columns off the heap, where its
+     * size does not add to garbage collection. The columns are still indexed
+     * by int, so they hold at most about 536 million points.
+     */
+    private final boolean OFF_HEAP;
+    
+    /**
+     * Directory binary snapshots of text data sets are cached in, so a data
+     * set is only parsed by the first job that uses it; null to always parse.
+     */
+    private final File CACHE_DIR;
+    
+    /**
+     * Most bytes of snapshots to keep in the cache.
+     */
+    private final long CACHE_BYTES;
+    
+    /**
+     * Whether each run's results are also printed to the console.
+     */
+    private final boolean ECHO_RESULTS;
+    
+    /**
+     * Whether the winning run's label for every point is exported to a
+     * bit-packed label file next to the output file.
+     */
+    private final boolean EXPORT_LABELS;
+    
+    /**
+     * Whether each run searches for medoids with CLARA instead of running
+     * the k-medians loop.
+     */
+    private final boolean SAMPLED_MEDOIDS;
+    
+    /**
+     * Number of samples CLARA draws per run.
+     */
+    private final int NUM_SAMPLES;
+    
     /**
      * Data taken in from the input file.
      */
-    private List<Point> D;
+    private PointStore D;
     
     /**
      * Set of Clusters placed on the graph.
@@ -49,6 +111,17 @@ public class Kmedians {
      */
     private File input, output;
     
+    /**
+     * Snapshot cache, null if there is none.
+     */
+    private SnapshotCache cache;
+    
+    /**
+     * Point file the data set is read from: the input itself, or the cached
+     * snapshot of a text input. Null if the input is parsed.
+     */
+    private File points;
+    
     /**
      * Random Number Generator.
      */
@@ -60,9 +133,9 @@ public class Kmedians {
     private static BufferedReader inputReader, fileReader;
     
     /**
-     * Writes to output file.
+     * Writes run results to the output file, off the clustering thread.
      */
-    private static BufferedWriter fileWriter;
+    private static ResultSink results;
     
     /**
      * Number of clusters to generate, and which distance measure to use.
@@ -70,9 +143,28 @@ public class Kmedians {
     private int k;
     
     /**
-     * Keeps track of which points belong to which clusters
+     * Sampled medoid search, only used when SAMPLED_MEDOIDS is set.
+     */
+    private Clara clara;
+    
+    /**
+     * Centres of the winning run so far, the one whose points are the least
+     * total Manhattan distance from their medians; null before the first
+     * run.
+     */
+    private int[] bestX, bestY;
+    
+    /**
+     * Total Manhattan distance from each point to its median in the winning
+     * run so far.
+     */
+    private double bestCost = Double.POSITIVE_INFINITY;
+    
+    /**
+     * Number of runs printed so far, so each run's silhouette sample is
+     * drawn with its own seed.
      */
-    private HashMap<Point, Cluster> dict;
+    private int runs;
     
     /**
      * Default constructor
@@ -82,30 +174,49 @@ public class Kmedians {
      */
     public Kmedians(){
         NUM_RUNS = 30;
-        D = new LinkedList<>();
+        INDEXED_DUNN = true;
+        SILHOUETTES = false;
+        SILHOUETTE_SAMPLE = 1000;
+        OFF_HEAP = false;
+        CACHE_DIR = new File("cache");
+        CACHE_BYTES = 4L << 30;
+        ECHO_RESULTS = true;
+        EXPORT_LABELS = false;
+        SAMPLED_MEDOIDS = false;
+        NUM_SAMPLES = 5;
+        D = new PointStore();
         V = new LinkedList<>();
         oldV = new LinkedList<>();
-        dict = new HashMap<>();
         inputReader = new BufferedReader(new InputStreamReader(System.in));
         output = new File("outputs", "z.txt");
         try {
-            fileWriter = new BufferedWriter(new FileWriter(output));
+            results = new ResultSink(output, ECHO_RESULTS);
+            results.start();
         } catch (IOException ex) {
             System.err.println("Failed to create z.txt");
         }
         setFileReader();
+        setPoints();
         setD();
         setK();
         initCluster();
         generator = new RNG(0, D.size(), inputReader);
+        if(SAMPLED_MEDOIDS){
+            clara = new Clara(D, k, NUM_SAMPLES, 40 + 2 * k);
+        }
         for(int i = 0; i < NUM_RUNS; i++){
-            randCluster();
-            cluster();
+            if(SAMPLED_MEDOIDS){
+                sampleMedoids();
+            } else {
+                randCluster();
+                cluster();
+            }
         }
+        exportLabels();
         try{
             inputReader.close();
             fileReader.close();
-            fileWriter.close();
+            results.close();
         } catch(Exception e){
             System.err.println("Closing something failed.");
         }
@@ -139,24 +250,61 @@ public class Kmedians {
     }
 
     /**
-     * Load data from the file to the list
-     * 
-     * @return list of points from the file  
+     * Finds the point file to read the data set from: the input if it is
+     * one, or else the input's snapshot in the cache, if it has one.
+     */
+    private void setPoints(){
+        try {
+            if (PointFile.isPointFile(input)) {
+                points = input;
+                return;
+            }
+        } catch (IOException ex) {
+            return;
+        }
+        if (CACHE_DIR != null) {
+            cache = new SnapshotCache(CACHE_DIR, CACHE_BYTES);
+            try {
+                points = cache.lookup(input);
+            } catch (IOException ex) {
+                System.err.println("Snapshot cache unavailable: "
+                        + ex.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Load data from the file to the list. A binary point file is mapped as
+     * it is; in a text file, lines that are not points are reported and
+     * skipped, and a snapshot is cached for the next job.
      */
     private void setD(){
-        String str;
-        String[] strarr;
-        
-        while(true){
-            try{
-                str = fileReader.readLine();
-                str = str.trim();
-                strarr = str.split("\\s+");
-                D.add(new Point(Integer.parseInt(strarr[0]), 
-                        Integer.parseInt(strarr[1])));
-            }catch(Exception e){
-                break;
+        try {
+            if (points != null) {
+                D = PointFile.open(points).getPoints();
+            } else {
+                D = PointParser.parse(input, OFF_HEAP);
+                storeSnapshot();
             }
+        } catch (IOException ex) {
+            System.err.println("Failed to read the data set: "
+                    + ex.getMessage());
+        }
+    }
+    
+    /**
+     * Caches a snapshot of the loaded data set, if there is a cache. Failing
+     * to store one is reported, and does not stop the job.
+     */
+    private void storeSnapshot(){
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.store(input, D);
+        } catch (IOException ex) {
+            System.err.println("Failed to store a snapshot: "
+                    + ex.getMessage());
         }
     }
     
@@ -213,24 +361,121 @@ public class Kmedians {
      */
     private void cluster(){
         while(true){
-            dict.clear();
-            for(Point dataPoint : D){
-                addToClosestCluster(dataPoint);
+            moveCentres();
+            if(compareSets(V, oldV)) break;
+            oldV = cloneV();
+        }
+        
+        assignAll();
+        printClusters();
+    }
+    
+    /**
+     * One pass of the clustering loop: gives every point its closest centre
+     * and moves each centre to the median of its points, as calcNewLoc
+     * does. The coordinates are read straight from the columns of D and
+     * sorted as ints, so no Point is made. Points already in a
+     * neighbourhood count towards its centre as well, as they always have in
+     * this loop; the neighbourhoods are emptied afterwards. A centre with no
+     * points stays where it is.
+     */
+    private void moveCentres(){
+        int[][] centres = getCentres();
+        int[] labels = new int[D.size()];
+        int[] counts = new int[centres[0].length];
+        IntBuffer xs = D.getXColumn(), ys = D.getYColumn();
+        int[][] clusterX = new int[counts.length][];
+        int[][] clusterY = new int[counts.length][];
+        int c, middle;
+        
+        for(int i = 0; i < labels.length; i++){
+            labels[i] = closest(xs.get(i), ys.get(i), centres);
+            counts[labels[i]]++;
+        }
+        c = 0;
+        for(Cluster cluster : V){
+            List<Point> kept = cluster.getNeighbourhood();
+            clusterX[c] = new int[counts[c] + kept.size()];
+            clusterY[c] = new int[counts[c] + kept.size()];
+            counts[c] = 0;
+            for(Point p : kept){
+                clusterX[c][counts[c]] = p.x;
+                clusterY[c][counts[c]++] = p.y;
             }
-            
-            for(Cluster c : V){
-                if(!c.getNeighbourhood().isEmpty()){
-                    c.calcNewLoc();
+            c++;
+        }
+        for(int i = 0; i < labels.length; i++){
+            c = labels[i];
+            clusterX[c][counts[c]] = xs.get(i);
+            clusterY[c][counts[c]++] = ys.get(i);
+        }
+        
+        c = 0;
+        for(Cluster cluster : V){
+            if(counts[c] > 0){
+                Arrays.sort(clusterX[c]);
+                Arrays.sort(clusterY[c]);
+                middle = counts[c]/2;
+                if(counts[c] % 2 == 1){
+                    cluster.setLoc(clusterX[c][middle], clusterY[c][middle]);
+                } else {
+                    cluster.setLoc(
+                            (clusterX[c][middle-1] + clusterX[c][middle])/2,
+                            (clusterY[c][middle-1] + clusterY[c][middle])/2);
                 }
-                c.clearNeighbourhood();
             }
-            if(compareSets(V, oldV)) break;
-            oldV = cloneV();
+            cluster.clearNeighbourhood();
+            c++;
+        }
+    }
+    
+    /**
+     * Adds every point to the neighbourhood of its closest centre.
+     */
+    private void assignAll(){
+        Cluster[] clusters = V.toArray(new Cluster[V.size()]);
+        int[][] centres = getCentres();
+        IntBuffer xs = D.getXColumn(), ys = D.getYColumn();
+        for(int i = 0; i < D.size(); i++){
+            clusters[closest(xs.get(i), ys.get(i), centres)]
+                    .addNeighbour(D.get(i));
+        }
+    }
+    
+    /**
+     * Copies the cluster centres into arrays.
+     * 
+     * @return x coordinate of each centre, then y coordinate of each centre
+     */
+    private int[][] getCentres(){
+        int[][] centres = new int[2][V.size()];
+        int c = 0;
+        for(Cluster cluster : V){
+            centres[0][c] = cluster.getLoc().x;
+            centres[1][c] = cluster.getLoc().y;
+            c++;
+        }
+        return centres;
+    }
+    
+    /**
+     * Places the clusters on the medoids found by CLARA, then assigns every
+     * point to its closest medoid. If no sample held k different locations,
+     * that is reported and the run skipped.
+     */
+    private void sampleMedoids(){
+        List<Point> medoids = clara.findMedoids(generator);
+        if(medoids == null){
+            System.err.println("Fewer than " + k
+                    + " different points were sampled.");
+            return;
         }
         
-        for(Point dataPoint : D){
-            addToClosestCluster(dataPoint);
+        for(int i = 0; i < k; i++){
+            V.get(i).setLoc(medoids.get(i));
+            V.get(i).clearNeighbourhood();
         }
+        assignAll();
         
         printClusters();
     }
@@ -271,170 +516,131 @@ public class Kmedians {
     }
     
     /**
-     * Takes a point and adds it to the neighbourhood of the cluster
-     * it is closest to.
-     * 
-     * Achieves this by calculating Euclidean distance.
-     * 
-     * @param p Data Point to associate with a cluster.
+     * Hands the centres and scores of the run to the result writer, to be
+     * printed to the console and to the output file
      */
-    private void addToClosestCluster(Point p){
-        Point cen, shortP = null;
-        double ed,  shortL = Double.POSITIVE_INFINITY;
-        Cluster clus;
+    private void printClusters(){
+        Validity validity = new Validity(V, INDEXED_DUNN);
+        double[] line = new double[(SILHOUETTES ? 3 : 2) * V.size()
+                + (SILHOUETTES ? 6 : 5)];
+        int i = 0;
         
-        //Calculate the distance between the point and each cluster centre and
-        //keep the shortest one
         for(Cluster c : V){
-            cen = c.getLoc();
-            ed = calcDist(cen, p);
-            
-            if(ed < shortL){
-                shortP = new Point(cen);
-                shortL = ed;
+            line[i++] = c.getLoc().getX();
+            line[i++] = c.getLoc().getY();
+        }
+        line[i++] = validity.getDunnIndex();
+        line[i++] = validity.getSSE();
+        line[i++] = validity.getCalinskiHarabasz();
+        line[i++] = validity.getDaviesBouldin();
+        line[i++] = validity.getBIC();
+        if(SILHOUETTES){
+            Silhouette silhouette = new Silhouette(V, SILHOUETTE_SAMPLE,
+                    generator.getSeed() + runs++);
+            line[i++] = silhouette.getOverall();
+            for(int j = 0; j < V.size(); j++){
+                line[i++] = silhouette.getCluster(j);
+            }
+        }
+        results.submit(line);
+        
+        double cost = getCost();
+        if(cost < bestCost){
+            bestCost = cost;
+            bestX = new int[V.size()];
+            bestY = new int[V.size()];
+            i = 0;
+            for(Cluster c : V){
+                bestX[i] = c.getLoc().x;
+                bestY[i++] = c.getLoc().y;
             }
         }
-        clus = findClusterFromPoint(shortP);
-        clus.addNeighbour(p);
-        dict.put(p, clus);
     }
     
-    
-    
     /**
-     * Gets the cluster centred at a Point.
+     * Sums the Manhattan distance from every point to the median of its
+     * cluster, the cost k-medians lowers.
      * 
-     * @param p point to find cluster at
-     * @return cluster at point p
+     * @return total distance over every cluster
      */
-    private Cluster findClusterFromPoint(Point p){
+    private double getCost(){
+        double cost = 0.0;
         for(Cluster c : V){
-            if (c.getLoc().equals(p)) {
-                return c;
+            int x = c.getLoc().x, y = c.getLoc().y;
+            for(Point p : c.getNeighbourhood()){
+                cost += manDist(p.x, p.y, x, y);
             }
         }
-        return null;
+        return cost;
     }
     
     /**
-     * Prints details of cluster to the console and to the output file
+     * Exports the label of every point in the winning run to a label file
+     * next to the output file, if asked for.
      */
-    private void printClusters(){
-        for(Cluster c : V){
-            System.out.print(c.toString() + " ");
-            try {
-                fileWriter.write(c.toString() + " ");
-            } catch (IOException ex) {
-                System.err.println("Failed to write line to file");
-            }
+    private void exportLabels(){
+        if(!EXPORT_LABELS || bestX == null){
+            return;
         }
-        System.out.print(getDunnIndex());
-        try {
-                fileWriter.write(Double.toString(getDunnIndex()));
-            } catch (IOException ex) {
-                System.err.println("Failed to write line to file");
+        File file = new File("outputs", Integer.toString(k) + ".lbl");
+        try (LabelFile labels = LabelFile.create(file, D.size(),
+                SnapshotCache.fingerprint(input, CACHE_DIR), bestX, bestY)) {
+            int[][] centres = {bestX, bestY};
+            IntBuffer xs = D.getXColumn(), ys = D.getYColumn();
+            for(int i = 0; i < D.size(); i++){
+                labels.add(closest(xs.get(i), ys.get(i), centres));
             }
-        System.out.println();
-        try {
-            fileWriter.newLine();
         } catch (IOException ex) {
-            System.err.println("Somehow, writing a newline failed.");
+            System.err.println("Failed to export labels: " + ex.getMessage());
         }
     }
     
     /**
-     * Calculates Dunn Index of the current set of clusters
-     * @return Dunn index
-     */
-    private double getDunnIndex(){
-        double dmin, dmax;
-        
-        dmin = getDMin();
-        dmax = getDMax();
-        
-        if(dmax == 0) return 0.0;
-        return dmin/dmax;
-    }
-    
-    /**
-     * Calculates first term for Dunn Index
-     * @return smallest distance between objects from 2 different clusters
-     */
-    private double getDMin(){
-        Cluster a = null, b = null;
-        double shortest = Double.POSITIVE_INFINITY, dist = 0.0;
-        for(Point p1 : D){
-            for(Point p2 : D){
-                if(!p1.equals(p2)){
-                    a = getCluster(p1);
-                    b = getCluster(p2);
-                    if (!a.equals(b)){
-                        dist = calcDist(a.getLoc(), b.getLoc());
-                    
-                        if(dist < shortest){
-                            shortest = dist;
-                        }
-                    }
-                }
-            }
-        }
-        if(shortest == Double.POSITIVE_INFINITY) {
-            System.out.println("say whaat");
-        }
-        return shortest;
-    }
-    
-    /**
-     * Gets a cluster in the dictionary from a point
-     * @param p location of cluster to find
-     * @return cluster at location p
-     */
-    private Cluster getCluster(Point p){
-        return dict.get(p);
-    }
-    
-    /**
-     * Calculates second term for Dunn Index
-     * @return largest distance between 2 objects in the same cluster
+     * Finds the centre closest to a point, the first one on a tie.
+     * 
+     * @param x x coordinate of the point to place
+     * @param y y coordinate of the point to place
+     * @param centres x coordinate of each centre, then y coordinate of each
+     * centre
+     * @return position of the closest centre
      */
-    private double getDMax(){
-        double largest = 0.0, dist;
-        
-        for(Cluster c : V){
-            for(Point p1 : c.getNeighbourhood()){
-                for(Point p2 : c.getNeighbourhood()){
-                    dist = calcDist(p1, p2);
-                    
-                    if(dist > largest){
-                        largest = dist;
-                    }
-                }
+    private int closest(int x, int y, int[][] centres){
+        int best = 0;
+        double d, shortest = Double.POSITIVE_INFINITY;
+        for(int c = 0; c < centres[0].length; c++){
+            d = calcDist(centres[0][c], centres[1][c], x, y);
+            if(d < shortest){
+                shortest = d;
+                best = c;
             }
         }
-        
-        return largest;
+        return best;
     }
     
     /**
      * Calculates a different distance based on which the user has selected
-     * @param a First point to find distance from
-     * @param b Second point to find distance to
+     * @param ax x coordinate of the first point
+     * @param ay y coordinate of the first point
+     * @param bx x coordinate of the second point
+     * @param by y coordinate of the second point
      * @return Distance between two points, calculated some way
      */
-    private double calcDist(Point a, Point b){
-        return manDist(a, b); 
+    private double calcDist(int ax, int ay, int bx, int by){
+        return manDist(ax, ay, bx, by); 
     }
     
     /**
      * Calculates Manhattan distance between two points
      * 
      * @see https://reference.wolfram.com/language/ref/ManhattanDistance.html
-     * @param a Point a
-     * @param b Point b
-     * @return  Manhattan distance between Points a and b
+     * @param ax x coordinate of point a
+     * @param ay y coordinate of point a
+     * @param bx x coordinate of point b
+     * @param by y coordinate of point b
+     * @return  Manhattan distance between points a and b
      */
-    private double manDist(Point a, Point b){
-        return Math.abs(a.getX() - b.getX()) + Math.abs(a.getY() - b.getY());
+    private double manDist(int ax, int ay, int bx, int by){
+        return Math.abs((double)ax - bx) + Math.abs((double)ay - by);
     }
     
     /**
@@ -0,0 +1,241 @@
+package kmedians;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Silhouette scores of a set of clusters. Each scored point gets its exact
+ * silhouette against the full data set, but only a random sample of points is
+ * scored, so the cost is sample size times n instead of n^2. A sample size of
+ * 0 scores every point.
+ *
+ * The points are never copied: the clusters' neighbourhoods are walked once,
+ * the sample is picked on the way by selection sampling, and scored points
+ * are handled BLOCK at a time. For each block, the distance sums to every
+ * cluster are accumulated over the neighbourhoods in parallel, LEAF scored
+ * points per task, and each task writes only its own points' sums, so memory
+ * stays at BLOCK sums per cluster however many points are scored.
+ */
+public class Silhouette {
+
+    /**
+     * Number of scored points handled at once.
+     */
+    private static final int BLOCK = 256;
+
+    /**
+     * Most scored points one task sums the distances of.
+     */
+    private static final int LEAF = 8;
+
+    /**
+     * Points of each cluster.
+     */
+    private final List<List<Point>> members;
+
+    /**
+     * Number of points in each cluster.
+     */
+    private final int[] sizes;
+
+    /**
+     * Sum of the silhouettes of the scored points in each cluster.
+     */
+    private final double[] total;
+
+    /**
+     * Number of scored points in each cluster.
+     */
+    private final int[] scored;
+
+    /**
+     * Scores a sample of the points in a set of clusters.
+     *
+     * @param clusters clusters to score, with their neighbourhoods
+     * @param sample number of points to score, 0 to score every point
+     * @param seed seed for picking the sample
+     */
+    public Silhouette(List<Cluster> clusters, int sample, long seed) {
+        int n = 0, label = 0;
+        members = new ArrayList<>();
+        sizes = new int[clusters.size()];
+        total = new double[clusters.size()];
+        scored = new int[clusters.size()];
+        for (Cluster c : clusters) {
+            members.add(c.getNeighbourhood());
+            sizes[label++] = c.getNeighbourhood().size();
+            n += c.getNeighbourhood().size();
+        }
+
+        Random rng = new Random(seed);
+        int wanted = sample > 0 && sample < n ? sample : n, seen = 0;
+        int[][] block = new int[3][BLOCK];
+        int filled = 0;
+        for (label = 0; label < members.size(); label++) {
+            for (Point p : members.get(label)) {
+                //selection sampling: of the n - seen points left, take this
+                //one with probability wanted / (n - seen)
+                if (wanted > 0 && rng.nextInt(n - seen) < wanted) {
+                    block[0][filled] = p.x;
+                    block[1][filled] = p.y;
+                    block[2][filled++] = label;
+                    wanted--;
+                    if (filled == BLOCK) {
+                        score(block, filled);
+                        filled = 0;
+                    }
+                }
+                seen++;
+            }
+        }
+        if (filled > 0) {
+            score(block, filled);
+        }
+    }
+
+    /**
+     * Getter for the mean silhouette over every scored point
+     *
+     * @return overall silhouette, 0 if nothing was scored
+     */
+    public double getOverall() {
+        double sum = 0.0;
+        int count = 0;
+        for (int c = 0; c < total.length; c++) {
+            sum += total[c];
+            count += scored[c];
+        }
+        return count == 0 ? 0.0 : sum / count;
+    }
+
+    /**
+     * Getter for the mean silhouette of the scored points in one cluster
+     *
+     * @param c position of the cluster in the list
+     * @return cluster's silhouette, 0 if none of its points were scored
+     */
+    public double getCluster(int c) {
+        return scored[c] == 0 ? 0.0 : total[c] / scored[c];
+    }
+
+    /**
+     * Works out the silhouette of every point in a block and adds it to its
+     * cluster's total.
+     *
+     * @param block x coordinates, y coordinates and clusters of the points
+     * to score
+     * @param count number of points in the block
+     */
+    private void score(int[][] block, int count) {
+        int k = sizes.length;
+        double[] sums = new double[count * k];
+        ForkJoinPool.commonPool().invoke(new SumTask(block, sums, 0, count));
+
+        for (int q = 0; q < count; q++) {
+            int own = block[2][q];
+            double a, b = Double.POSITIVE_INFINITY, s;
+            for (int c = 0; c < k; c++) {
+                if (c != own && sizes[c] > 0) {
+                    b = Math.min(b, sums[q * k + c] / sizes[c]);
+                }
+            }
+
+            if (sizes[own] == 1 || b == Double.POSITIVE_INFINITY) {
+                s = 0.0;
+            } else {
+                //the point's distance to itself is 0, so only divide by the
+                //other m - 1 points
+                a = sums[q * k + own] / (sizes[own] - 1);
+                s = Math.max(a, b) == 0 ? 0.0 : (b - a) / Math.max(a, b);
+            }
+            total[own] += s;
+            scored[own]++;
+        }
+    }
+
+    /**
+     * Calculates Manhattan distance between two points
+     *
+     * @param ax x coordinate of point a
+     * @param ay y coordinate of point a
+     * @param b point b
+     * @return Manhattan distance between points a and b
+     */
+    private static double manDist(int ax, int ay, Point b) {
+        return Math.abs((double) ax - b.x) + Math.abs((double) ay - b.y);
+    }
+
+    /**
+     * Sums the distances from a range of the points of a block to every point
+     * of every cluster, per cluster, splitting the range in half until it is
+     * at most LEAF points. Each task only writes its own points' sums.
+     */
+    private class SumTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * x coordinates, y coordinates and clusters of the points being
+         * scored.
+         */
+        private final int[][] block;
+
+        /**
+         * Sum for scored point q and cluster c at q * k + c, filled in by the
+         * tasks.
+         */
+        private final double[] sums;
+
+        /**
+         * Range of scored points, from inclusive and to exclusive.
+         */
+        private final int from, to;
+
+        /**
+         * Creates a task over a range of the scored points.
+         *
+         * @param b coordinates and clusters of the points being scored
+         * @param s sums to fill in
+         * @param f first scored point
+         * @param t one past the last scored point
+         */
+        SumTask(int[][] b, double[] s, int f, int t) {
+            block = b;
+            sums = s;
+            from = f;
+            to = t;
+        }
+
+        /**
+         * Sums distances for the range.
+         */
+        @Override
+        protected void compute() {
+            int k = sizes.length;
+            if (to - from > LEAF) {
+                int mid = (from + to) >>> 1;
+                SumTask left = new SumTask(block, sums, from, mid);
+                left.fork();
+                new SumTask(block, sums, mid, to).compute();
+                left.join();
+                return;
+            }
+
+            for (int c = 0; c < k; c++) {
+                for (Point p : members.get(c)) {
+                    for (int q = from; q < to; q++) {
+                        sums[q * k + c] += manDist(block[0][q], block[1][q], p);
+                    }
+                }
+            }
+        }
+    }
+}
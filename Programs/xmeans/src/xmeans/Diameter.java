@@ -0,0 +1,150 @@
+package xmeans;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Finds the diameter of a set of points, the largest distance between any two
+ * of them, without comparing every pair.
+ *
+ * The two points furthest apart always lie on the convex hull, so the hull is
+ * built with Andrew's monotone chain and then walked with rotating calipers.
+ * That is O(m log m) instead of the O(m^2) double loop.
+ */
+public class Diameter {
+
+    /**
+     * Orders points by x, then by y.
+     */
+    private static final Comparator<Point> BY_X_THEN_Y
+            = new Comparator<Point>() {
+        @Override
+        public int compare(Point a, Point b) {
+            if (a.x != b.x) {
+                return Integer.compare(a.x, b.x);
+            }
+            return Integer.compare(a.y, b.y);
+        }
+    };
+
+    /**
+     * Static helper, never instantiated.
+     */
+    private Diameter() {
+    }
+
+    /**
+     * Calculates the largest Euclidean distance between two points of a set.
+     *
+     * @param points set of points
+     * @return largest distance between two of the points, 0 if fewer than 2
+     */
+    public static double euclidean(List<Point> points) {
+        Point[] hull = convexHull(points);
+        int h = hull.length;
+        double largest = 0.0;
+
+        if (h < 2) {
+            return 0.0;
+        }
+        if (h == 2) {
+            return Math.sqrt(distSq(hull[0], hull[1]));
+        }
+
+        //for each hull edge, advance the opposite point while it gets further
+        //away from the edge; the furthest pair is always one of these
+        int j = 1;
+        for (int i = 0; i < h; i++) {
+            Point a = hull[i], b = hull[(i + 1) % h];
+            while (area(a, b, hull[(j + 1) % h]) > area(a, b, hull[j])) {
+                j = (j + 1) % h;
+            }
+            largest = Math.max(largest, distSq(a, hull[j]));
+            largest = Math.max(largest, distSq(b, hull[j]));
+        }
+
+        return Math.sqrt(largest);
+    }
+
+    /**
+     * Builds the convex hull of a set of points with Andrew's monotone chain.
+     * Collinear points are dropped.
+     *
+     * @param points set of points
+     * @return hull vertices in counter-clockwise order
+     */
+    private static Point[] convexHull(List<Point> points) {
+        Point[] sorted = points.toArray(new Point[points.size()]);
+        int n = sorted.length, h = 0;
+
+        if (n < 2) {
+            return sorted;
+        }
+        Arrays.sort(sorted, BY_X_THEN_Y);
+        Point[] hull = new Point[2 * n];
+
+        //lower hull
+        for (int i = 0; i < n; i++) {
+            while (h >= 2 && cross(hull[h - 2], hull[h - 1], sorted[i]) <= 0) {
+                h--;
+            }
+            hull[h++] = sorted[i];
+        }
+        //upper hull
+        for (int i = n - 2, lower = h + 1; i >= 0; i--) {
+            while (h >= lower
+                    && cross(hull[h - 2], hull[h - 1], sorted[i]) <= 0) {
+                h--;
+            }
+            hull[h++] = sorted[i];
+        }
+
+        //last point is the first one again; all points equal leaves just one
+        return Arrays.copyOf(hull, Math.max(1, h - 1));
+    }
+
+    /**
+     * Cross product of (b - a) and (c - a); positive when a, b, c turn
+     * counter-clockwise.
+     *
+     * @param a first point
+     * @param b second point
+     * @param c third point
+     * @return cross product
+     */
+    private static long cross(Point a, Point b, Point c) {
+        return ((long) b.x - a.x) * ((long) c.y - a.y)
+                - ((long) b.y - a.y) * ((long) c.x - a.x);
+    }
+
+    /**
+     * Twice the area of the triangle a, b, c; used to compare how far c is
+     * from the line through a and b.
+     *
+     * @param a first point of the edge
+     * @param b second point of the edge
+     * @param c point to measure
+     * @return twice the triangle's area
+     */
+    private static long area(Point a, Point b, Point c) {
+        return Math.abs(cross(a, b, c));
+    }
+
+    /**
+     * Squared Euclidean distance between two points.
+     *
+     * @param a Point a
+     * @param b Point b
+     * @return squared distance between Points a and b
+     */
+    private static double distSq(Point a, Point b) {
+        double dx = a.getX() - b.getX(), dy = a.getY() - b.getY();
+        return dx * dx + dy * dy;
+    }
+}
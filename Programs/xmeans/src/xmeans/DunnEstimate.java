@@ -0,0 +1,242 @@
+package xmeans;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Estimates the Dunn Index of a set of clusters from a sample of each
+ * cluster, along with bounds that always contain the exact value.
+ *
+ * The sampled dmin can only be too high and the sampled dmax can only be too
+ * low, so they give the upper bound. The lower bound uses the distance between
+ * cluster bounding boxes for dmin and the smaller of twice the cluster radius
+ * and the box diagonal for dmax; both take one pass over each cluster.
+ * Refining doubles the sample; once every point is sampled the estimate is
+ * exact.
+ */
+public class DunnEstimate {
+
+    /**
+     * Number of clusters being measured.
+     */
+    private final int clusterCount;
+
+    /**
+     * Bounding box of each cluster.
+     */
+    private final double[] minX, maxX, minY, maxY;
+
+    /**
+     * Bound on dmin from the boxes and on dmax from radius and box size.
+     */
+    private final double dminLower, dmaxUpper;
+
+    /**
+     * Draws the samples.
+     */
+    private final Random rng;
+
+    /**
+     * Points sampled per cluster.
+     */
+    private int sampleSize;
+
+    /**
+     * Sampled dmin and dmax.
+     */
+    private double dminUpper, dmaxLower;
+
+    /**
+     * Whether every point has been sampled.
+     */
+    private boolean exact;
+
+    /**
+     * Creates a new estimate and takes the first sample.
+     *
+     * @param clusters clusters to measure, with their neighbourhoods
+     * @param size number of points to sample per cluster
+     * @param seed seed for the sampling
+     */
+    public DunnEstimate(List<Cluster> clusters, int size, long seed) {
+        List<Cluster> V = clusters;
+        clusterCount = V.size();
+        sampleSize = size;
+        rng = new Random(seed);
+        minX = new double[V.size()];
+        maxX = new double[V.size()];
+        minY = new double[V.size()];
+        maxY = new double[V.size()];
+
+        double radius, upper = 0.0;
+        for (int i = 0; i < V.size(); i++) {
+            minX[i] = minY[i] = Double.POSITIVE_INFINITY;
+            maxX[i] = maxY[i] = Double.NEGATIVE_INFINITY;
+            radius = 0.0;
+            for (Point p : V.get(i).getNeighbourhood()) {
+                minX[i] = Math.min(minX[i], p.getX());
+                maxX[i] = Math.max(maxX[i], p.getX());
+                minY[i] = Math.min(minY[i], p.getY());
+                maxY[i] = Math.max(maxY[i], p.getY());
+                radius = Math.max(radius, euDist(p, V.get(i).getLoc()));
+            }
+            if (!V.get(i).getNeighbourhood().isEmpty()) {
+                upper = Math.max(upper, Math.min(2 * radius,
+                        Math.hypot(maxX[i] - minX[i], maxY[i] - minY[i])));
+            }
+        }
+        dmaxUpper = upper;
+
+        double lower = Double.POSITIVE_INFINITY, dx, dy;
+        for (int i = 0; i < V.size(); i++) {
+            for (int j = i + 1; j < V.size(); j++) {
+                dx = Math.max(0.0, Math.max(minX[i] - maxX[j],
+                        minX[j] - maxX[i]));
+                dy = Math.max(0.0, Math.max(minY[i] - maxY[j],
+                        minY[j] - maxY[i]));
+                lower = Math.min(lower, Math.hypot(dx, dy));
+            }
+        }
+        dminLower = lower;
+
+        sample(V);
+    }
+
+    /**
+     * Doubles the sample size and samples again, unless already exact. The
+     * estimate does not keep the clusters, so they have to be passed in
+     * again.
+     *
+     * @param clusters the same clusters the estimate was made from
+     */
+    public void refine(List<Cluster> clusters) {
+        if (!exact) {
+            sampleSize *= 2;
+            sample(clusters);
+        }
+    }
+
+    /**
+     * Getter for the estimated Dunn Index
+     *
+     * @return sampled Dunn Index
+     */
+    public double getEstimate() {
+        return dunn(dminUpper, dmaxLower);
+    }
+
+    /**
+     * Getter for the lowest value the Dunn Index could have
+     *
+     * @return lower bound on the Dunn Index
+     */
+    public double getLower() {
+        if (exact) {
+            return getEstimate();
+        }
+        return dunn(dminLower, dmaxUpper);
+    }
+
+    /**
+     * Getter for the highest value the Dunn Index could have
+     *
+     * @return upper bound on the Dunn Index
+     */
+    public double getUpper() {
+        if (!exact && dmaxLower == 0 && clusterCount > 1) {
+            //no sampled pair inside a cluster yet, so dmax is unknown
+            return Double.POSITIVE_INFINITY;
+        }
+        return getEstimate();
+    }
+
+    /**
+     * Whether every point has been sampled, so the estimate is exact
+     *
+     * @return true if the estimate is the exact Dunn Index
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Takes sampleSize points from each cluster and measures dmin and dmax
+     * over the sample.
+     *
+     * @param V clusters to sample from
+     */
+    private void sample(List<Cluster> V) {
+        List<Cluster> sampled = new LinkedList<>();
+        double largest = 0.0;
+        exact = true;
+
+        for (Cluster c : V) {
+            List<Point> points = new ArrayList<>(c.getNeighbourhood());
+            if (points.size() > sampleSize) {
+                //partial shuffle, the first sampleSize points are the sample
+                for (int i = 0; i < sampleSize; i++) {
+                    Collections.swap(points, i,
+                            i + rng.nextInt(points.size() - i));
+                }
+                points = points.subList(0, sampleSize);
+                exact = false;
+            }
+            Cluster s = new Cluster();
+            s.setNeighbourhood(points);
+            sampled.add(s);
+            largest = Math.max(largest, Diameter.euclidean(points));
+        }
+
+        dminUpper = new KdTree(sampled).closestPair();
+        dmaxLower = largest;
+    }
+
+    /**
+     * Calculates the Dunn Index from its two terms, the same way the engine
+     * does
+     *
+     * @param dmin smallest distance between clusters
+     * @param dmax largest distance within a cluster
+     * @return Dunn index
+     */
+    private double dunn(double dmin, double dmax) {
+        if (clusterCount == 1 || dmax == 0) {
+            return 0.0;
+        }
+        return dmin / dmax;
+    }
+
+    /**
+     * Calculates Euclidean distances between two points
+     *
+     * @param a Point a
+     * @param b Point b
+     * @return Euclidean distance between Points a and b
+     */
+    private double euDist(Point a, Point b) {
+        return Math.sqrt(Math.pow(a.getX() - b.getX(), 2)
+                + Math.pow(a.getY() - b.getY(), 2));
+    }
+
+    /**
+     * Describes the estimate and its bounds
+     *
+     * @return string
+     */
+    @Override
+    public String toString() {
+        if (exact) {
+            return Double.toString(getEstimate());
+        }
+        return Double.toString(getEstimate()) + " [" + getLower() + ", "
+                + getUpper() + "]";
+    }
+}
@@ -0,0 +1,404 @@
+package xmeans;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * 2-d tree over clustered points, used to find the closest pair of points
+ * that belong to different clusters without comparing every pair.
+ *
+ * Every node remembers its bounding box and, if all of its points come from
+ * the same cluster, which cluster that is. A query for a point skips any
+ * subtree that only holds its own cluster, or whose box is already further
+ * away than the closest pair found so far.
+ *
+ * The same search, with every point in its own cluster, gives each point's
+ * nearest neighbour, and repeated with clusters merged along the way it gives
+ * a minimum spanning tree (Boruvka).
+ */
+public class KdTree {
+
+    /**
+     * Largest number of points kept in a leaf.
+     */
+    private static final int LEAF_SIZE = 8;
+
+    /**
+     * Node label for subtrees holding points from more than one cluster.
+     */
+    private static final int MIXED = -1;
+
+    /**
+     * Coordinates and cluster of each point, reordered so every node owns a
+     * contiguous range.
+     */
+    private final int[] xs, ys, labels;
+
+    /**
+     * Range of points owned by each node, from inclusive and to exclusive.
+     */
+    private final int[] from, to;
+
+    /**
+     * Children of each node, -1 for leaves.
+     */
+    private final int[] left, right;
+
+    /**
+     * Bounding box of each node.
+     */
+    private final int[] minX, maxX, minY, maxY;
+
+    /**
+     * Cluster shared by every point of a node, or MIXED.
+     */
+    private final int[] nodeLabel;
+
+    /**
+     * Number of nodes built so far.
+     */
+    private int nodes;
+
+    /**
+     * Point that last beat the best distance in a search, -1 if none did.
+     */
+    private int found;
+
+    /**
+     * Builds a tree over every point in the neighbourhoods of a list of
+     * clusters. A point's cluster is its cluster's position in the list.
+     *
+     * @param clusters clusters whose neighbourhoods to index
+     */
+    public KdTree(List<Cluster> clusters) {
+        int n = 0, i = 0, label = 0;
+        for (Cluster c : clusters) {
+            n += c.getNeighbourhood().size();
+        }
+
+        xs = new int[n];
+        ys = new int[n];
+        labels = new int[n];
+        for (Cluster c : clusters) {
+            for (Point p : c.getNeighbourhood()) {
+                xs[i] = p.x;
+                ys[i] = p.y;
+                labels[i] = label;
+                i++;
+            }
+            label++;
+        }
+
+        int max = 2 * (n / LEAF_SIZE + 1) * 2;
+        from = new int[max];
+        to = new int[max];
+        left = new int[max];
+        right = new int[max];
+        minX = new int[max];
+        maxX = new int[max];
+        minY = new int[max];
+        maxY = new int[max];
+        nodeLabel = new int[max];
+        if (n > 0) {
+            build(0, n);
+        }
+    }
+
+    /**
+     * Finds the smallest distance between two points in different clusters.
+     *
+     * @return smallest distance, or infinity if there is only one cluster
+     */
+    public double closestPair() {
+        double best = Double.POSITIVE_INFINITY;
+
+        //points are visited in tree order, so neighbouring queries touch the
+        //same nodes and the bound tightens quickly
+        for (int i = 0; i < xs.length; i++) {
+            best = nearestOther(0, i, best);
+        }
+        return Math.sqrt(best);
+    }
+
+    /**
+     * Finds the distance from every point to its nearest other point.
+     *
+     * @return nearest neighbour distances, longest first
+     */
+    public double[] nearestNeighbours() {
+        int[] clusters = labels.clone();
+        double[] nn = new double[xs.length];
+
+        for (int i = 0; i < xs.length; i++) {
+            labels[i] = i;
+        }
+        relabel();
+        for (int i = 0; i < xs.length; i++) {
+            nn[i] = Math.sqrt(nearestOther(0, i, Double.POSITIVE_INFINITY));
+        }
+
+        System.arraycopy(clusters, 0, labels, 0, labels.length);
+        relabel();
+        return longestFirst(nn);
+    }
+
+    /**
+     * Finds the edge lengths of a minimum spanning tree over every point.
+     * Each round, every group of joined points finds its shortest edge out to
+     * another group, and all of those edges are added, so there are at most
+     * log n rounds.
+     *
+     * @return edge lengths, longest first
+     */
+    public double[] spanningTree() {
+        int[] clusters = labels.clone(), group = new int[xs.length];
+        int[] from = new int[xs.length], to = new int[xs.length];
+        double[] shortest = new double[xs.length];
+        double[] edges = new double[Math.max(0, xs.length - 1)];
+        int count = 0, a, b;
+
+        for (int i = 0; i < xs.length; i++) {
+            labels[i] = group[i] = i;
+        }
+        while (count < edges.length) {
+            relabel();
+            Arrays.fill(shortest, Double.POSITIVE_INFINITY);
+            for (int i = 0; i < xs.length; i++) {
+                found = -1;
+                double d = nearestOther(0, i, shortest[labels[i]]);
+                if (found >= 0) {
+                    shortest[labels[i]] = d;
+                    from[labels[i]] = i;
+                    to[labels[i]] = found;
+                }
+            }
+
+            for (int g = 0; g < xs.length; g++) {
+                if (shortest[g] == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                a = root(group, labels[from[g]]);
+                b = root(group, labels[to[g]]);
+                if (a != b) {
+                    group[Math.max(a, b)] = Math.min(a, b);
+                    edges[count++] = Math.sqrt(shortest[g]);
+                }
+            }
+            for (int i = 0; i < xs.length; i++) {
+                labels[i] = root(group, labels[i]);
+            }
+        }
+
+        System.arraycopy(clusters, 0, labels, 0, labels.length);
+        relabel();
+        return longestFirst(edges);
+    }
+
+    /**
+     * Follows a group's links to the group it was merged into.
+     *
+     * @param group group each group was merged into, itself if not merged
+     * @param g group to look up
+     * @return group g belongs to now
+     */
+    private int root(int[] group, int g) {
+        while (group[g] != g) {
+            group[g] = group[group[g]];
+            g = group[g];
+        }
+        return g;
+    }
+
+    /**
+     * Works out every node's label again after the points' labels change.
+     * Children are always built after their parent, so going backwards
+     * visits them first.
+     */
+    private void relabel() {
+        for (int node = nodes - 1; node >= 0; node--) {
+            if (left[node] < 0) {
+                nodeLabel[node] = labels[from[node]];
+                for (int i = from[node]; i < to[node]; i++) {
+                    if (labels[i] != nodeLabel[node]) {
+                        nodeLabel[node] = MIXED;
+                    }
+                }
+            } else if (nodeLabel[left[node]] == nodeLabel[right[node]]) {
+                nodeLabel[node] = nodeLabel[left[node]];
+            } else {
+                nodeLabel[node] = MIXED;
+            }
+        }
+    }
+
+    /**
+     * Sorts distances from longest to shortest.
+     *
+     * @param d distances to sort, sorted in place
+     * @return the same array
+     */
+    private static double[] longestFirst(double[] d) {
+        Arrays.sort(d);
+        for (int i = 0, j = d.length - 1; i < j; i++, j--) {
+            double t = d[i];
+            d[i] = d[j];
+            d[j] = t;
+        }
+        return d;
+    }
+
+    /**
+     * Builds the subtree over a range of points.
+     *
+     * @param lo first point of the range
+     * @param hi one past the last point of the range
+     * @return index of the new node
+     */
+    private int build(int lo, int hi) {
+        int node = nodes++;
+        from[node] = lo;
+        to[node] = hi;
+        minX[node] = minY[node] = Integer.MAX_VALUE;
+        maxX[node] = maxY[node] = Integer.MIN_VALUE;
+        nodeLabel[node] = labels[lo];
+        for (int i = lo; i < hi; i++) {
+            minX[node] = Math.min(minX[node], xs[i]);
+            maxX[node] = Math.max(maxX[node], xs[i]);
+            minY[node] = Math.min(minY[node], ys[i]);
+            maxY[node] = Math.max(maxY[node], ys[i]);
+            if (labels[i] != nodeLabel[node]) {
+                nodeLabel[node] = MIXED;
+            }
+        }
+
+        if (hi - lo <= LEAF_SIZE) {
+            left[node] = right[node] = -1;
+        } else {
+            //split the wider side at its median
+            boolean byX = (long) maxX[node] - minX[node]
+                    >= (long) maxY[node] - minY[node];
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi - 1, mid, byX);
+            left[node] = build(lo, mid);
+            right[node] = build(mid, hi);
+        }
+        return node;
+    }
+
+    /**
+     * Reorders a range so the point at index k is the one that would be there
+     * if the range were sorted, with no greater point before it and no smaller
+     * one after it.
+     *
+     * @param lo first index of the range
+     * @param hi last index of the range, inclusive
+     * @param k index to place
+     * @param byX whether to compare x (true) or y (false) coordinates
+     */
+    private void select(int lo, int hi, int k, boolean byX) {
+        int[] key = byX ? xs : ys;
+        while (lo < hi) {
+            int pivot = key[(lo + hi) >>> 1], i = lo, j = hi;
+            while (i <= j) {
+                while (key[i] < pivot) {
+                    i++;
+                }
+                while (key[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Swaps two points.
+     *
+     * @param a index of the first point
+     * @param b index of the second point
+     */
+    private void swap(int a, int b) {
+        int t = xs[a];
+        xs[a] = xs[b];
+        xs[b] = t;
+        t = ys[a];
+        ys[a] = ys[b];
+        ys[b] = t;
+        t = labels[a];
+        labels[a] = labels[b];
+        labels[b] = t;
+    }
+
+    /**
+     * Searches a subtree for a point in a different cluster than point i that
+     * is closer than the best distance found so far.
+     *
+     * @param node subtree to search
+     * @param i point to search from
+     * @param best squared distance to beat
+     * @return new best squared distance
+     */
+    private double nearestOther(int node, int i, double best) {
+        if (nodeLabel[node] == labels[i] || boxDist(node, i) >= best) {
+            return best;
+        }
+
+        if (left[node] < 0) {
+            for (int j = from[node]; j < to[node]; j++) {
+                if (labels[j] != labels[i] && pointDist(i, j) < best) {
+                    best = pointDist(i, j);
+                    found = j;
+                }
+            }
+        } else if (boxDist(left[node], i) <= boxDist(right[node], i)) {
+            best = nearestOther(left[node], i, best);
+            best = nearestOther(right[node], i, best);
+        } else {
+            best = nearestOther(right[node], i, best);
+            best = nearestOther(left[node], i, best);
+        }
+        return best;
+    }
+
+    /**
+     * Squared Euclidean distance between two points.
+     *
+     * @param a index of point a
+     * @param b index of point b
+     * @return squared distance between points a and b
+     */
+    private double pointDist(int a, int b) {
+        double dx = (double) xs[a] - xs[b], dy = (double) ys[a] - ys[b];
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Squared Euclidean distance from a point to the closest spot in a node's
+     * bounding box.
+     *
+     * @param node node whose box to measure to
+     * @param i index of the point
+     * @return squared distance, 0 if the point is inside the box
+     */
+    private double boxDist(int node, int i) {
+        double dx = Math.max(0.0, Math.max((double) minX[node] - xs[i],
+                (double) xs[i] - maxX[node]));
+        double dy = Math.max(0.0, Math.max((double) minY[node] - ys[i],
+                (double) ys[i] - maxY[node]));
+        return dx * dx + dy * dy;
+    }
+}
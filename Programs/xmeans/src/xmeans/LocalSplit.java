@@ -0,0 +1,224 @@
+package xmeans;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Tries splitting one cluster in two, Pelleg and Moore style. A 2-means run
+ * over only the cluster's own points places the two children, then the BIC
+ * of the children is compared to the BIC of the parent. Both BIC scores come
+ * from the clusters' sums, so the whole test is linear in the cluster size.
+ *
+ * Each split is its own task, so every cluster can be tried at once. A task
+ * draws its children's starting points with its own seed, so the outcome does
+ * not depend on which thread runs it or when. Without scoring, a task only
+ * places the children, for splits that have already been decided on.
+ */
+public class LocalSplit extends RecursiveAction
+        implements Comparable<LocalSplit> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Most 2-means iterations to run before settling for the current
+     * children.
+     */
+    private static final int MAX_ITERATIONS = 100;
+
+    /**
+     * Cluster being split, with its neighbourhood.
+     */
+    private final Cluster parent;
+
+    /**
+     * The two children, unplaced until the task runs.
+     */
+    private final Cluster first, second;
+
+    /**
+     * Seed for drawing the children's starting points.
+     */
+    private final long seed;
+
+    /**
+     * Whether to run 2-means and score the split (true), or only place the
+     * children at two random points of the cluster (false).
+     */
+    private final boolean scored;
+
+    /**
+     * BIC of the children minus BIC of the parent.
+     */
+    private double gain;
+
+    /**
+     * Creates a split of a cluster.
+     *
+     * @param c cluster to split
+     * @param s seed for drawing the children's starting points
+     * @param score whether to run 2-means and score the split (true), or
+     * only place the children (false)
+     */
+    public LocalSplit(Cluster c, long s, boolean score) {
+        parent = c;
+        first = new Cluster();
+        second = new Cluster();
+        seed = s;
+        scored = score;
+        gain = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Places the children at two of the parent's points and, if the split is
+     * scored, runs 2-means on the parent's points and scores the children.
+     */
+    @Override
+    protected void compute() {
+        Point[] start = pickSeeds(new Random(seed));
+        Point a, b;
+        if (start == null) {
+            return;
+        }
+        first.setLoc(start[0]);
+        second.setLoc(start[1]);
+        if (!scored) {
+            return;
+        }
+
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            first.clearNeighbourhood();
+            second.clearNeighbourhood();
+            for (Point p : parent.getNeighbourhood()) {
+                if (euDist(p, first.getLoc()) <= euDist(p, second.getLoc())) {
+                    first.addNeighbour(p);
+                } else {
+                    second.addNeighbour(p);
+                }
+            }
+            if (first.getNeighbourhood().isEmpty()
+                    || second.getNeighbourhood().isEmpty()) {
+                //every point went to one child, so there is nothing to split
+                return;
+            }
+
+            a = first.getLoc();
+            b = second.getLoc();
+            first.calcNewLoc();
+            second.calcNewLoc();
+            if (a.equals(first.getLoc()) && b.equals(second.getLoc())) {
+                break;
+            }
+        }
+
+        gain = new Validity(getChildren(), true).getBIC()
+                - new Validity(Collections.singletonList(parent), true)
+                        .getBIC();
+    }
+
+    /**
+     * Whether the children could be placed, which needs two different points
+     * in the cluster
+     *
+     * @return true if the children have locations
+     */
+    public boolean hasChildren() {
+        return first.getLoc() != null;
+    }
+
+    /**
+     * Whether the children model the parent's points better than the parent
+     *
+     * @return true if the split raises the BIC
+     */
+    public boolean improves() {
+        return gain > 0;
+    }
+
+    /**
+     * Getter for how much the split raises the BIC
+     *
+     * @return BIC of the children minus BIC of the parent
+     */
+    public double getGain() {
+        return gain;
+    }
+
+    /**
+     * Getter for the cluster being split
+     *
+     * @return parent cluster
+     */
+    public Cluster getParent() {
+        return parent;
+    }
+
+    /**
+     * Getter for the two children
+     *
+     * @return children, with the parent's points shared between them
+     */
+    public List<Cluster> getChildren() {
+        return Arrays.asList(first, second);
+    }
+
+    /**
+     * Calculates Euclidean distances between two points
+     *
+     * @param a Point a
+     * @param b Point b
+     * @return Euclidean distance between Points a and b
+     */
+    private double euDist(Point a, Point b) {
+        return Math.sqrt(Math.pow(a.getX() - b.getX(), 2)
+                + Math.pow(a.getY() - b.getY(), 2));
+    }
+
+    /**
+     * Picks two different points of the cluster for the children to start at.
+     * The first is drawn at random; the second is the first point different
+     * from it found by scanning the cluster once, from a random position and
+     * wrapping around.
+     *
+     * @param rng random numbers for this split
+     * @return the two points, or null if every point of the cluster is at the
+     * same place
+     */
+    private Point[] pickSeeds(Random rng) {
+        List<Point> points = new ArrayList<>(parent.getNeighbourhood());
+        int n = points.size(), start;
+        Point a, b;
+        if (n < 2) {
+            return null;
+        }
+
+        a = points.get(rng.nextInt(n));
+        start = rng.nextInt(n);
+        for (int i = 0; i < n; i++) {
+            b = points.get((start + i) % n);
+            if (!b.equals(a)) {
+                return new Point[]{a, b};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Orders splits so the one that raises the BIC most comes first.
+     *
+     * @param o split to compare to
+     * @return negative if this split is better
+     */
+    @Override
+    public int compareTo(LocalSplit o) {
+        return Double.compare(o.getGain(), this.getGain());
+    }
+}
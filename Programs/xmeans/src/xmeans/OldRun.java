@@ -1,42 +1,124 @@
 package xmeans;
 
+import java.awt.Point;
 import java.util.LinkedList;
+import java.util.List;
 
 /**
  * @author Alexis Varsava <av11sl@brocku.ca>
- * @version 1
+ * @version 2
  * @since 2016-04-22
- * 
+ *
  * Stores an old run of the k-means clustering algorithm
+ *
+ * Version 2: Keeps only the cluster centres, sizes and scores; the clusters'
+ * points are found again with an assignment pass when they are needed.
  */
 public class OldRun implements Comparable<OldRun> {
     /**
      * K value associated with this run
      */
     private int k;
+
+    /**
+     * Coordinates of each cluster centre
+     */
+    private int[] xs, ys;
+
+    /**
+     * Centres as points, made on the first call to closest
+     */
+    private Point[] centres;
+
+    /**
+     * Number of points in each cluster
+     */
+    private int[] sizes;
+
+    /**
+     * Splits that led to this run's clusters, null if not recorded
+     */
+    private SplitTree tree;
     
     /**
-     * Dunn Index score this run achieved
+     * Measure this run is ranked by
+     */
+    private Criterion criterion;
+
+    /**
+     * Score under the criterion, taken when the run was recorded
+     */
+    private double score;
+
+    /**
+     * Dunn Index, NaN until it is measured
      */
     private double dunn;
-    
+
     /**
-     * Final set of clusters in the run
+     * Scores worked out from the cluster sums
      */
-    private LinkedList<Cluster> V;
-    
+    private double sse, calinski, davies, bic;
+
+    /**
+     * Sampled estimate of the Dunn Index, null if it was computed exactly
+     */
+    private DunnEstimate estimate;
+
     /**
      * Creates a new OldRun
      * @param n new value for k
-     * @param l new list of clusters
-     * @param d new dunn index score
+     * @param l final clusters of the run
+     * @param v validity measures of the clusters
+     * @param c measure to rank the run by
      */
-    public OldRun (int n, LinkedList<Cluster> l, double d){
+    public OldRun (int n, List<Cluster> l, Validity v, Criterion c){
+        this(n, l, v);
+        criterion = c;
+        score = c.score(v);
+        if (c == Criterion.DUNN){
+            dunn = score;
+        }
+    }
+
+    /**
+     * Creates a new OldRun scored by a sampled Dunn Index
+     * @param n new value for k
+     * @param l final clusters of the run
+     * @param v validity measures of the clusters
+     * @param e new dunn index estimate
+     */
+    public OldRun (int n, List<Cluster> l, Validity v, DunnEstimate e){
+        this(n, l, v);
+        criterion = Criterion.DUNN;
+        estimate = e;
+    }
+
+    /**
+     * Copies the centres, sizes and cheap scores of a set of clusters
+     * @param n new value for k
+     * @param l final clusters of the run
+     * @param v validity measures of the clusters
+     */
+    private OldRun (int n, List<Cluster> l, Validity v){
+        int i = 0;
         k = n;
-        V = new LinkedList<>(l);
-        dunn = d;
+        xs = new int[l.size()];
+        ys = new int[l.size()];
+        sizes = new int[l.size()];
+        for (Cluster c : l){
+            xs[i] = c.getLoc().x;
+            ys[i] = c.getLoc().y;
+            sizes[i] = c.getNeighbourhood().size();
+            i++;
+        }
+        dunn = Double.NaN;
+        sse = v.getSSE();
+        calinski = v.getCalinskiHarabasz();
+        davies = v.getDaviesBouldin();
+        bic = v.getBIC();
     }
-    
+
     /**
      * Getter for this run's k value
      * @return k
@@ -44,37 +126,182 @@ public class OldRun implements Comparable<OldRun> {
     public int getK(){
         return k;
     }
-    
+
     /**
      * Getter for this run's Dunn Index score
-     * @return Dunn Index
+     * @return Dunn Index, NaN if it has not been measured
      */
     public double getDunn(){
+        if (estimate != null){
+            return estimate.getEstimate();
+        }
         return dunn;
     }
+
+    /**
+     * Getter for this run's sampled Dunn Index
+     * @return Dunn Index estimate, null if it was computed exactly
+     */
+    public DunnEstimate getEstimate(){
+        return estimate;
+    }
+
+    /**
+     * Getter for the score this run is ranked by
+     * @return score under the run's criterion
+     */
+    public double getScore(){
+        if (estimate != null){
+            return estimate.getEstimate();
+        }
+        return score;
+    }
+
+    /**
+     * Getter for the number of points in each cluster
+     * @return cluster sizes, in the same order as the centres
+     */
+    public int[] getSizes(){
+        return sizes;
+    }
+
+    /**
+     * Getter for the centres' x coordinates
+     * @return x coordinate of each centre
+     */
+    public int[] getXs(){
+        return xs;
+    }
+
+    /**
+     * Getter for the centres' y coordinates
+     * @return y coordinate of each centre
+     */
+    public int[] getYs(){
+        return ys;
+    }
+
+    /**
+     * Getter for the splits that led to this run's clusters
+     * @return split tree, null if not recorded
+     */
+    public SplitTree getTree(){
+        return tree;
+    }
     
     /**
-     * Getter for this run's set of clusters
-     * @return list of clusters
+     * Setter for the splits that led to this run's clusters
+     * @param t split tree over the run's clusters
      */
-    public LinkedList<Cluster> getV(){
-        return V;
+    public void setTree(SplitTree t){
+        tree = t;
     }
     
+    /**
+     * Rebuilds this run's clusters by giving every point to its closest
+     * centre, ties going to the first centre. The run had converged, so this
+     * gives back the same clusters it ended with.
+     * @param data data set the run was made on
+     * @return list of clusters, with their neighbourhoods
+     */
+    public LinkedList<Cluster> getV(List<Point> data){
+        LinkedList<Cluster> V = new LinkedList<>();
+        Cluster[] clusters = new Cluster[xs.length];
+        for (int i = 0; i < xs.length; i++){
+            clusters[i] = new Cluster();
+            clusters[i].setLoc(xs[i], ys[i]);
+            V.add(clusters[i]);
+        }
+        for (Point p : data){
+            clusters[closest(p)].addNeighbour(p);
+        }
+        return V;
+    }
+
+    /**
+     * Finds the centre closest to a point, the first one on a tie. Goes down
+     * the split tree when the run has one, otherwise measures every centre
+     * @param p point to place
+     * @return position of the closest centre
+     */
+    public int closest(Point p){
+        double d, best = Double.POSITIVE_INFINITY;
+        int closest = 0;
+        if (tree != null){
+            return tree.nearest(p);
+        }
+        if (centres == null){
+            centres = new Point[xs.length];
+            for (int i = 0; i < xs.length; i++){
+                centres[i] = new Point(xs[i], ys[i]);
+            }
+        }
+        for (int i = 0; i < xs.length; i++){
+            d = euDist(p, centres[i]);
+            if (d < best){
+                best = d;
+                closest = i;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Measures the exact Dunn Index if it has not been measured yet
+     * @param data data set the run was made on
+     * @param indexed whether to use the kd-tree and diameters (true) or an
+     * exact all-pairs pass (false)
+     */
+    public void measureDunn(List<Point> data, boolean indexed){
+        if (estimate == null && Double.isNaN(dunn)){
+            dunn = new Validity(getV(data), indexed).getDunnIndex();
+        }
+    }
+
+    /**
+     * Doubles the sample behind the Dunn Index estimate
+     * @param data data set the run was made on
+     */
+    public void refine(List<Point> data){
+        if (!estimate.isExact()){
+            estimate.refine(getV(data));
+        }
+    }
+
+    /**
+     * Calculates Euclidean distances between two points
+     *
+     * @param a Point a
+     * @param b Point b
+     * @return Euclidean distance between Points a and b
+     */
+    private double euDist(Point a, Point b) {
+        return Math.sqrt(Math.pow(a.getX() - b.getX(), 2)
+                + Math.pow(a.getY() - b.getY(), 2));
+    }
+
     @Override
     public String toString(){
-        return "K: "+ Integer.toString(k) + " V: " + V.toString() 
-                + " Dunn Index: " + Double.toString(dunn);
+        StringBuilder V = new StringBuilder("[");
+        for (int i = 0; i < xs.length; i++){
+            if (i > 0){
+                V.append(", ");
+            }
+            V.append((double) xs[i]).append(' ').append((double) ys[i]);
+        }
+        V.append(']');
+
+        return "K: "+ Integer.toString(k) + " V: " + V.toString()
+                + " Dunn Index: " + (estimate != null ? estimate.toString()
+                        : Double.toString(getDunn()))
+                + " SSE: " + Double.toString(sse)
+                + " Calinski-Harabasz: " + Double.toString(calinski)
+                + " Davies-Bouldin: " + Double.toString(davies)
+                + " BIC: " + Double.toString(bic);
     }
 
     @Override
     public int compareTo(OldRun o) {
-        if (this.getDunn() > o.getDunn()){
-            return -1;
-        } else if(this.getDunn() < o.getDunn()){
-            return 1;
-        } else{
-            return 0;
-        }
+        return criterion.compare(this.getScore(), o.getScore());
     }
 }
@@ -0,0 +1,108 @@
+package xmeans;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Records which cluster split into which during one run, so a SplitTree can
+ * be taken of the clusters at any k.
+ */
+public class SplitHistory {
+
+    /**
+     * Node standing for each cluster that is or was in the list.
+     */
+    private final Map<Cluster, Integer> nodes;
+
+    /**
+     * Children of each node, -1 until it is split.
+     */
+    private final List<Integer> left, right;
+
+    /**
+     * Nodes of the clusters the run started with.
+     */
+    private final List<Integer> roots;
+
+    /**
+     * Starts a history from the clusters a run starts with.
+     *
+     * @param V starting clusters
+     */
+    public SplitHistory(List<Cluster> V) {
+        nodes = new IdentityHashMap<>();
+        left = new ArrayList<>();
+        right = new ArrayList<>();
+        roots = new ArrayList<>();
+        for (Cluster c : V) {
+            roots.add(add(c));
+        }
+    }
+
+    /**
+     * Records that a cluster was split in two.
+     *
+     * @param parent cluster that was split
+     * @param children its two children
+     */
+    public void split(Cluster parent, List<Cluster> children) {
+        int node = nodes.get(parent);
+        left.set(node, add(children.get(0)));
+        right.set(node, add(children.get(1)));
+    }
+
+    /**
+     * Takes a tree of the current clusters, with their current centres.
+     *
+     * @param V current clusters, every one of them a leaf of the history
+     * @return split tree over V
+     */
+    public SplitTree snapshot(List<Cluster> V) {
+        int n = left.size(), i = 0;
+        int[] l = new int[n + roots.size() - 1];
+        int[] r = new int[l.length];
+        int[] leaf = new int[l.length];
+        int[] xs = new int[V.size()], ys = new int[V.size()];
+
+        for (int node = 0; node < n; node++) {
+            l[node] = left.get(node);
+            r[node] = right.get(node);
+            leaf[node] = -1;
+        }
+        for (Cluster c : V) {
+            leaf[nodes.get(c)] = i;
+            xs[i] = c.getLoc().x;
+            ys[i] = c.getLoc().y;
+            i++;
+        }
+
+        //join the starting clusters under extra nodes so there is one root
+        int top = roots.get(0);
+        for (int j = 1; j < roots.size(); j++) {
+            l[n] = top;
+            r[n] = roots.get(j);
+            leaf[n] = -1;
+            top = n++;
+        }
+        return new SplitTree(l, r, leaf, top, xs, ys);
+    }
+
+    /**
+     * Adds a node for a cluster.
+     *
+     * @param c cluster to add
+     * @return the new node
+     */
+    private int add(Cluster c) {
+        nodes.put(c, left.size());
+        left.add(-1);
+        right.add(-1);
+        return left.size() - 1;
+    }
+}
@@ -3,6 +3,13 @@ package xmeans;
 import java.awt.Point;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+import pointio.LabelFile;
+import pointio.PointFile;
+import pointio.PointParser;
+import pointio.PointStore;
+import pointio.ResultSink;
+import pointio.SnapshotCache;
 
 /**
  * @author Alexis Varsava <av11sl@brocku.ca>
@@ -19,6 +26,74 @@ public class Xmeans {
      */
     private final int NUM_RUNS;
 
+    /**
+     * Whether the Dunn Index terms come from the kd-tree and the cluster
+     * diameters (true), or from an exact all-pairs pass on every core (false).
+     */
+    private final boolean INDEXED_DUNN;
+
+    /**
+     * Points sampled per cluster to estimate the Dunn Index of each k, 0 to
+     * compute it exactly.
+     */
+    private final int DUNN_SAMPLE;
+
+    /**
+     * Validity measure used to pick the best k.
+     */
+    private final Criterion CRITERION;
+
+    /**
+     * Whether each round tries splitting every cluster and keeps the splits
+     * that raise the BIC (true), or splits the half of the clusters with the
+     * largest diameter (false).
+     */
+    private final boolean BIC_SPLITS;
+
+    /**
+     * Number of rounds in a row without a better score before the k search
+     * stops, 0 to never stop early this way.
+     */
+    private final int PATIENCE;
+
+    /**
+     * Whether the k search stops once no later round is likely to beat the
+     * best Dunn Index so far. Only used when ranking by the Dunn Index. This
+     * is a heuristic: the ceiling it compares against holds for rounds whose
+     * clusters all have points, and a later round that leaves a cluster
+     * empty can score higher, so the search may stop before its best round.
+     */
+    private final boolean DUNN_BOUND;
+
+    /**
+     * Whether a text data set is loaded into columns off the heap, where its
+     * size does not add to garbage collection. The columns are still indexed
+     * by int, so they hold at most about 536 million points.
+     */
+    private final boolean OFF_HEAP;
+
+    /**
+     * Directory binary snapshots of text data sets are cached in, so a data
+     * set is only parsed by the first job that uses it; null to always parse.
+     */
+    private final File CACHE_DIR;
+
+    /**
+     * Most bytes of snapshots to keep in the cache.
+     */
+    private final long CACHE_BYTES;
+
+    /**
+     * Whether each run's results are also printed to the console.
+     */
+    private final boolean ECHO_RESULTS;
+
+    /**
+     * Whether the best run's label for every point is exported to a
+     * bit-packed label file next to the output file.
+     */
+    private final boolean EXPORT_LABELS;
+
     /**
      * Data taken in from the input file.
      */
@@ -30,20 +105,42 @@ public class Xmeans {
     private List<Cluster> V;
 
     /**
-     * Copy of V, for comparing to so we can stop eventually.
+     * Keeps copies of all the previous runs, so we can determine which is best.
      */
-    private List<Cluster> oldV;
+    private List<OldRun> oldRuns;
 
     /**
-     * Keeps copies of all the previous runs, so we can determine which is best.
+     * Best run over every restart, kept for its split tree.
      */
-    private List<OldRun> oldRuns;
+    private OldRun best;
+
+    /**
+     * Splits made so far in the current run.
+     */
+    private SplitHistory history;
+
+    /**
+     * Highest Dunn Index any round with more than k clusters could reach, by
+     * k, null until first needed.
+     */
+    private double[] dunnCeiling;
 
     /**
      * Files to read from and write to, respectively.
      */
     private File input, output;
 
+    /**
+     * Snapshot cache, null if there is none.
+     */
+    private SnapshotCache cache;
+
+    /**
+     * Point file the data set is read from: the input itself, or the cached
+     * snapshot of a text input. Null if the input is parsed.
+     */
+    private File points;
+
     /**
      * Random Number Generator.
      */
@@ -55,9 +152,9 @@ public class Xmeans {
     private static BufferedReader inputReader, fileReader;
 
     /**
-     * Writes to output file.
+     * Writes run results to the output file, off the clustering thread.
      */
-    private static BufferedWriter fileWriter;
+    private static ResultSink results;
 
     /**
      * Number of clusters to generate.
@@ -69,11 +166,6 @@ public class Xmeans {
      */
     private int maxK;
 
-    /**
-     * Keeps track of which points belong to which clusters
-     */
-    private HashMap<Point, Cluster> dict;
-
     /**
      * Default constructor
      *
@@ -82,19 +174,30 @@ public class Xmeans {
      */
     public Xmeans() {
         NUM_RUNS = 30;
-        D = new LinkedList<>();
+        INDEXED_DUNN = true;
+        DUNN_SAMPLE = 0;
+        CRITERION = Criterion.DUNN;
+        BIC_SPLITS = false;
+        PATIENCE = 0;
+        DUNN_BOUND = false;
+        OFF_HEAP = false;
+        CACHE_DIR = new File("cache");
+        CACHE_BYTES = 4L << 30;
+        ECHO_RESULTS = true;
+        EXPORT_LABELS = false;
+        D = new PointStore();
         V = new LinkedList<>();
-        oldV = new LinkedList<>();
-        dict = new HashMap<>();
         oldRuns = new LinkedList<>();
         inputReader = new BufferedReader(new InputStreamReader(System.in));
         output = new File("outputs", "z.txt");
         try {
-            fileWriter = new BufferedWriter(new FileWriter(output));
+            results = new ResultSink(output, ECHO_RESULTS);
+            results.start();
         } catch (IOException ex) {
             System.err.println("Failed to create z.txt");
         }
         setFileReader();
+        setPoints();
         setD();
         setMaxK();
         generator = new RNG(0, D.size(), inputReader);
@@ -109,12 +212,14 @@ public class Xmeans {
         try {
             inputReader.close();
             fileReader.close();
-            fileWriter.close();
+            results.close();
         } catch (Exception e) {
             System.err.println("Closing something failed.");
         }
 
         output.renameTo(new File("outputs", Long.toString(generator.getSeed())));
+        saveTree();
+        exportLabels();
     }
 
     /**
@@ -143,24 +248,64 @@ public class Xmeans {
     }
 
     /**
-     * Load data from the file to the list
-     *
-     * @return list of points from the file
+     * Finds the point file to read the data set from: the input if it is
+     * one, or else the input's snapshot in the cache, if it has one.
      */
-    private void setD() {
-        String str;
-        String[] strarr;
-
-        while (true) {
+    private void setPoints() {
+        try {
+            if (PointFile.isPointFile(input)) {
+                points = input;
+                return;
+            }
+        } catch (IOException ex) {
+            return;
+        }
+        if (CACHE_DIR != null) {
+            cache = new SnapshotCache(CACHE_DIR, CACHE_BYTES);
             try {
-                str = fileReader.readLine();
-                str = str.trim();
-                strarr = str.split("\\s+");
-                D.add(new Point(Integer.parseInt(strarr[0]),
-                        Integer.parseInt(strarr[1])));
-            } catch (Exception e) {
-                break;
+                points = cache.lookup(input);
+            } catch (IOException ex) {
+                System.err.println("Snapshot cache unavailable: "
+                        + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Load data from the file to the list. A binary point file is mapped as
+     * it is; in a text file, lines that are not points are reported and
+     * skipped, and a snapshot is cached for the next job.
+     */
+    private void setD() {
+        try {
+            if (points != null) {
+                D = PointFile.open(points).getPoints();
+            } else {
+                PointStore parsed = PointParser.parse(input, OFF_HEAP);
+                D = parsed;
+                storeSnapshot(parsed);
             }
+        } catch (IOException ex) {
+            System.err.println("Failed to read the data set: "
+                    + ex.getMessage());
+        }
+    }
+
+    /**
+     * Caches a snapshot of the loaded data set, if there is a cache. Failing
+     * to store one is reported, and does not stop the job.
+     *
+     * @param parsed points parsed from the input
+     */
+    private void storeSnapshot(PointStore parsed) {
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.store(input, parsed);
+        } catch (IOException ex) {
+            System.err.println("Failed to store a snapshot: "
+                    + ex.getMessage());
         }
     }
 
@@ -228,274 +373,285 @@ public class Xmeans {
      * Run loop for clustering.
      */
     private void cluster() {
+        BoundedLloyd lloyd = new BoundedLloyd(D);
+        List<Cluster> before;
+        OldRun record = null, leader = null;
+        String stop = "reached the max number of clusters";
+        int stale = 0;
+
+        history = new SplitHistory(V);
 
         while (k <= maxK) {
-            //run kMeans til convergence
-            while (true) {
-                dict.clear();
-                for (Point dataPoint : D) {
-                    addToClosestCluster(dataPoint);
-                }
+            //run kMeans til convergence, starting from the last round's labels
+            lloyd.run(V);
 
-                for (Cluster c : V) {
-                    if (!c.getNeighbourhood().isEmpty()) {
-                        c.calcNewLoc();
-                    }
-                    c.clearNeighbourhood();
-                }
+            //add to list of old runs
+            Validity validity = new Validity(V, INDEXED_DUNN);
+            if (DUNN_SAMPLE > 0 && CRITERION == Criterion.DUNN) {
+                record = new OldRun(k, V, validity, new DunnEstimate(V,
+                        DUNN_SAMPLE, generator.getSeed() + k));
+            } else {
+                record = new OldRun(k, V, validity, CRITERION);
+            }
+            record.setTree(history.snapshot(V));
+            oldRuns.add(record);
+
+            //stop early once later rounds are unlikely to win
+            if (leader == null || record.compareTo(leader) < 0) {
+                leader = record;
+                stale = 0;
+            } else {
+                stale++;
+            }
+            if (PATIENCE > 0 && stale >= PATIENCE) {
+                stop = "no better score in " + PATIENCE + " rounds";
+                break;
+            }
+            if (DUNN_BOUND && CRITERION == Criterion.DUNN && k < maxK
+                    && !hasEmptyCluster()
+                    && dunnCeiling(k) < (leader.getEstimate() != null
+                    ? leader.getEstimate().getLower() : leader.getScore())) {
+                stop = "later rounds are unlikely to beat a Dunn Index of "
+                        + leader.getScore() + " (Dunn ceiling heuristic)";
+                break;
+            }
 
-                if (compareSets(V, oldV)) {
+            before = new ArrayList<>(V);
+            if (BIC_SPLITS) {
+                if (!improveStructure()) {
+                    stop = "no split raises the BIC";
                     break;
                 }
-                oldV = cloneV();
-            }
-
-            for (Point dataPoint : D) {
-                addToClosestCluster(dataPoint);
+            } else if (!splitV(validity)) {
+                stop = "no cluster has two different points left to split";
+                break;
             }
-            oldV.clear();
-
-            //add to list of old runs
-            oldRuns.add(new OldRun(k, cloneV(), getDunnIndex()));
-            
-            //split half the clusters
-            splitV();
+            lloyd.update(before, V);
         }
+        System.err.println("Stopped after k = " + record.getK() + ": " + stop);
         printOldRuns();
     }
 
     /**
-     * Prints best of the old runs to screen and to file
+     * Checks whether any cluster was left without points.
+     *
+     * @return true if some cluster is empty
      */
-    public void printOldRuns() {
-        Collections.sort(oldRuns);
-        System.out.println(oldRuns.get(0));
-        try {
-            fileWriter.write(oldRuns.get(0).toString());
-        } catch (IOException ex) {
-            System.err.println("Failed to write line to file");
-        }
-        try {
-            fileWriter.newLine();
-        } catch (IOException ex) {
-            System.err.println("Somehow, writing a newline failed.");
+    private boolean hasEmptyCluster() {
+        for (Cluster c : V) {
+            if (c.getNeighbourhood().isEmpty()) {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
-     * Splits worst clusters into two new clusters
-     */
-    public void splitV() {
-        LinkedList<ClusterNode> clusterList = new LinkedList<>();
-        Cluster toSplit;
-
-        for (Cluster c : V) {
-            clusterList.add(new ClusterNode(c, getDMax(c)));
-        }
-
-        Collections.sort(clusterList);
-        int mid = (clusterList.size() / 2) - 1;
-        //split clusters into 2 new ones
-        for (int i = 0; i <= mid; i++) {
-            LinkedList<Cluster> twoNewClusters = new LinkedList<>();
-            twoNewClusters.add(new Cluster());
-            twoNewClusters.add(new Cluster());
-            toSplit = findClusterFromPoint(
-                    clusterList.get(i).getCluster().getLoc());
-            randCluster(twoNewClusters, toSplit.getNeighbourhood());
-            V.remove(toSplit);
-            V.addAll(twoNewClusters);
-            k++;
+     * Works out the highest Dunn Index a round with more than k clusters
+     * could reach if none of them is empty. With j clusters, dmin is at most
+     * the (j - 1)th longest edge of a minimum spanning tree over the data, and
+     * since at most j points can be alone in their cluster, dmax is at least
+     * the (j + 1)th longest nearest neighbour distance. Both only depend on
+     * the data, so they are worked out once.
+     *
+     * This is not a bound on every later round. A round with j clusters of
+     * which some are empty has fewer clusters with points, so its dmin can
+     * be an earlier, longer edge, and with one cluster holding every point it
+     * has no dmin at all. The ceiling is skipped while the current round has
+     * an empty cluster, but later rounds are only assumed to have none.
+     *
+     * @param k number of clusters in the current round
+     * @return highest Dunn Index with more than k and at most maxK clusters
+     */
+    private double dunnCeiling(int k) {
+        if (dunnCeiling == null) {
+            Cluster all = new Cluster();
+            all.setNeighbourhood(D);
+            KdTree tree = new KdTree(Collections.singletonList(all));
+            double[] edges = tree.spanningTree(), nn = tree.nearestNeighbours();
+            double ceiling = 0.0, bound;
+
+            dunnCeiling = new double[maxK + 1];
+            for (int j = maxK; j >= 2; j--) {
+                dunnCeiling[j] = ceiling;
+                if (j >= D.size()) {
+                    //every point is alone, so dmax and the Dunn Index are 0
+                    bound = 0.0;
+                } else if (nn[j] == 0) {
+                    bound = Double.POSITIVE_INFINITY;
+                } else {
+                    bound = edges[j - 2] / nn[j];
+                }
+                ceiling = Math.max(ceiling, bound);
+            }
         }
-
+        return dunnCeiling[k];
     }
 
     /**
-     * Not sure if regular copying of a LinkedList is deep enough for my
-     * purposes, so i'll just do it manually
-     *
-     * @return clone of V
+     * Hands the best of the old runs to the result writer, to be printed to
+     * screen and to file
      */
-    private LinkedList<Cluster> cloneV() {
-        LinkedList<Cluster> newList = new LinkedList<>();
-        for (Cluster c : V) {
-            newList.add(new Cluster(c));
+    public void printOldRuns() {
+        if (DUNN_SAMPLE > 0 && CRITERION == Criterion.DUNN) {
+            refineOldRuns();
+        }
+        Collections.sort(oldRuns);
+        oldRuns.get(0).measureDunn(D, INDEXED_DUNN);
+        if (best == null || oldRuns.get(0).compareTo(best) < 0) {
+            best = oldRuns.get(0);
         }
-        return newList;
+        results.submit(oldRuns.get(0));
     }
 
     /**
-     * Compare two lists of Clusters for equivalence
-     *
-     * @param l1 first list of clusters
-     * @param l2 second list of clusters
-     * @return true if equivalent, false if not
+     * Writes the split tree of the best run to the outputs folder, so new
+     * points can be assigned to its clusters later.
      */
-    private boolean compareSets(List<Cluster> l1, List<Cluster> l2) {
-        if (l1.isEmpty() || l2.isEmpty()) {
-            return false;
+    private void saveTree() {
+        if (best == null || best.getTree() == null) {
+            return;
         }
-
-        for (int i = 0; i < Math.max(l1.size(), l2.size()); i++) {
-            if (!l1.get(i).equals(l2.get(i))) {
-                return false;
-            }
+        try {
+            best.getTree().save(new File("outputs",
+                    Long.toString(generator.getSeed()) + ".tree"));
+        } catch (IOException ex) {
+            System.err.println("Failed to write the split tree");
         }
-        return true;
     }
 
     /**
-     * Takes a point and adds it to the neighbourhood of the cluster it is
-     * closest to.
-     *
-     * Achieves this by calculating Euclidean distance.
-     *
-     * @param p Data Point to associate with a cluster.
+     * Exports the label of every point in the best run to a label file in
+     * the outputs folder, if asked for.
      */
-    private void addToClosestCluster(Point p) {
-        Point cen, shortP = null;
-        double ed, shortL = Double.POSITIVE_INFINITY;
-        Cluster clus;
-
-        //Calculate the distance between the point and each cluster centre and
-        //keep the shortest one
-        for (Cluster c : V) {
-            cen = c.getLoc();
-            ed = calcDist(cen, p);
-            if (ed < shortL) {
-                shortP = new Point(cen);
-                shortL = ed;
+    private void exportLabels() {
+        if (!EXPORT_LABELS || best == null) {
+            return;
+        }
+        File file = new File("outputs",
+                Long.toString(generator.getSeed()) + ".lbl");
+        try (LabelFile labels = LabelFile.create(file, D.size(),
+                SnapshotCache.fingerprint(input, CACHE_DIR), best.getXs(),
+                best.getYs())) {
+            for (Point p : D) {
+                labels.add(best.closest(p));
             }
+        } catch (IOException ex) {
+            System.err.println("Failed to export labels: " + ex.getMessage());
         }
-        clus = findClusterFromPoint(shortP);
-        clus.addNeighbour(p);
-        dict.put(p, clus);
     }
 
     /**
-     * Gets the cluster centred at a Point.
-     *
-     * @param p point to find cluster at
-     * @return cluster at point p
+     * Refines the sampled Dunn Index of the old runs until the best one can be
+     * told apart from every other run
      */
-    private Cluster findClusterFromPoint(Point p) {
-        for (Cluster c : V) {
-            if (c.getLoc().equals(p)) {
-                return c;
+    private void refineOldRuns() {
+        boolean close = true;
+        OldRun best;
+
+        while (close) {
+            Collections.sort(oldRuns);
+            best = oldRuns.get(0);
+            close = false;
+            for (OldRun r : oldRuns.subList(1, oldRuns.size())) {
+                if (r.getEstimate().getUpper() > best.getEstimate().getLower()
+                        && !(r.getEstimate().isExact()
+                        && best.getEstimate().isExact())) {
+                    r.refine(D);
+                    close = true;
+                }
+            }
+            if (close) {
+                best.refine(D);
             }
         }
-        return null;
     }
 
     /**
-     * Calculates Dunn Index of the current set of clusters
+     * Splits worst clusters into two new clusters
+     *
+     * The children of every split are placed at the same time, each split with
+     * its own seed from the generator, and added to V in ranking order.
      *
-     * @return Dunn index
+     * @param validity validity measures of the current clusters, in the same
+     * order as V
+     * @return true if at least one cluster was split
      */
-    private double getDunnIndex() {
-        if (V.size() == 1) {
-            return 0.0;
-        }
-        double dmin, dmax;
+    public boolean splitV(Validity validity) {
+        LinkedList<ClusterNode> clusterList = new LinkedList<>();
+        List<LocalSplit> splits = new ArrayList<>();
+        boolean split = false;
+        int i = 0;
 
-        dmin = getDMin();
-        dmax = getDMax();
+        for (Cluster c : V) {
+            clusterList.add(new ClusterNode(c, validity.getDiameter(i++)));
+        }
 
-        if (dmax == 0) {
-            return 0.0;
+        Collections.sort(clusterList);
+        int mid = (clusterList.size() / 2) - 1;
+        for (i = 0; i <= mid; i++) {
+            splits.add(new LocalSplit(clusterList.get(i).getCluster(),
+                    generator.getIntInRange(Integer.MAX_VALUE), false));
         }
-        return dmin / dmax;
-    }
+        ForkJoinTask.invokeAll(splits);
 
-    /**
-     * Calculates first term for Dunn Index
-     *
-     * @return smallest distance between objects from 2 different clusters
-     */
-    private double getDMin() {
-        Cluster a = null, b = null;
-        double shortest = Double.POSITIVE_INFINITY, dist = 0.0;
-        for (Point p1 : D) {
-            for (Point p2 : D) {
-                if (!p1.equals(p2)) {
-                    a = getCluster(p1);
-                    b = getCluster(p2);
-                    if (!a.equals(b)) {
-                        //dist = distanceCache.getDistance(p1, p2);
-                        dist = calcDist(p1, p2);
-                        if (dist < shortest) {
-                            shortest = dist;
-                        }
-                    }
-                }
+        //split clusters into 2 new ones
+        for (LocalSplit s : splits) {
+            if (s.hasChildren()) {
+                replace(s);
+                split = true;
             }
         }
-        if (shortest == Double.POSITIVE_INFINITY) {
-            System.out.println("say whaat");
-        }
-        return shortest;
+        return split;
     }
 
     /**
-     * Gets cluster at a specific location from the dictionary
-     * @param p Location of cluster to find
-     * @return cluster at location
-     */
-    private Cluster getCluster(Point p) {
-        return dict.get(p);
-    }
-
-    /**
-     * Calculates second term for Dunn Index
+     * Tries splitting every cluster in two using only its own points, all at
+     * once, then keeps the splits that raise the BIC, best first, for as long
+     * as k stays within maxK.
      *
-     * @return largest distance between 2 objects in the same cluster
+     * @return true if at least one cluster was split
      */
-    private double getDMax() {
-        List<Double> dmaxes = new LinkedList<>();
+    private boolean improveStructure() {
+        List<LocalSplit> splits = new ArrayList<>();
+        boolean split = false;
+
+        //seeds are drawn in cluster order so the run only depends on the seed
         for (Cluster c : V) {
-            dmaxes.add(getDMax(c));
+            splits.add(new LocalSplit(c,
+                    generator.getIntInRange(Integer.MAX_VALUE), true));
         }
-        dmaxes.sort(null);
-        return dmaxes.get(dmaxes.size() - 1);
-    }
+        ForkJoinTask.invokeAll(splits);
 
-    private double getDMax(Cluster c) {
-        double largest = 0.0, dist;
-
-        for (Point p1 : c.getNeighbourhood()) {
-            for (Point p2 : c.getNeighbourhood()) {
-                //dist = distanceCache.getDistance(p1, p2);
-                dist = calcDist(p1, p2);
-                if (dist > largest) {
-                    largest = dist;
-                }
+        Collections.sort(splits);
+        for (LocalSplit s : splits) {
+            if (!s.improves() || k >= maxK) {
+                break;
             }
+            replace(s);
+            split = true;
         }
-
-        return largest;
+        return split;
     }
 
     /**
-     * Calculates a different distance based on which the user has selected
+     * Replaces a split cluster in V with its two children.
      *
-     * @param a First point to find distance from
-     * @param b Second point to find distance to
-     * @return Distance between two points, calculated some way
+     * @param s split to apply
      */
-    private double calcDist(Point a, Point b) {
-        return euDist(a, b);
-    }
-
-    /**
-     * Calculates Euclidean distances between two points
-     *
-     * @param a Point a
-     * @param b Point b
-     * @return Euclidean distance between Points a and b
-     */
-    private double euDist(Point a, Point b) {
-        return Math.sqrt(Math.pow(a.getX() - b.getX(), 2)
-                + Math.pow(a.getY() - b.getY(), 2));
+    private void replace(LocalSplit s) {
+        for (Iterator<Cluster> it = V.iterator(); it.hasNext();) {
+            if (it.next() == s.getParent()) {
+                it.remove();
+                break;
+            }
+        }
+        for (Cluster child : s.getChildren()) {
+            child.clearNeighbourhood();
+            V.add(child);
+        }
+        history.split(s.getParent(), s.getChildren());
+        k++;
     }
 
     /**
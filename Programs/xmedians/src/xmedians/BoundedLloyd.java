@@ -0,0 +1,262 @@
+package xmedians;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Lloyd iterations that remember which cluster each point is in between
+ * rounds, so a round after a split starts from the previous round's labels
+ * instead of from scratch.
+ *
+ * Every point keeps an upper bound on the distance to its own centre and a
+ * lower bound on the distance to any other centre (Hamerly). When the centres
+ * move the bounds are loosened by how far they moved, and a point is only
+ * measured against every centre if its bounds no longer prove its centre is
+ * the closest. Only clusters whose points changed get a new location, so
+ * clusters untouched by a split cost one bounds check per point.
+ *
+ * Points are assigned exactly as a full pass would: to the closest centre,
+ * ties going to the one first in the list.
+ */
+public class BoundedLloyd {
+
+    /**
+     * Points, in the order of the data set.
+     */
+    private final Point[] points;
+
+    /**
+     * Cluster of each point as a position in the cluster list, -1 if it has
+     * to be found from scratch.
+     */
+    private final int[] labels;
+
+    /**
+     * Upper bound on the distance from each point to its centre.
+     */
+    private final double[] upper;
+
+    /**
+     * Lower bound on the distance from each point to any other centre.
+     */
+    private final double[] lower;
+
+    /**
+     * Creates the labels for a data set, with every point unassigned.
+     *
+     * @param data points to cluster
+     */
+    public BoundedLloyd(List<Point> data) {
+        points = data.toArray(new Point[data.size()]);
+        labels = new int[points.length];
+        upper = new double[points.length];
+        lower = new double[points.length];
+        Arrays.fill(labels, -1);
+    }
+
+    /**
+     * Moves the clusters until no centre changes, starting from the current
+     * labels, then sets every cluster's neighbourhood to its final points.
+     *
+     * @param clusters clusters to move, in the order the labels refer to
+     */
+    public void run(List<Cluster> clusters) {
+        Cluster[] V = clusters.toArray(new Cluster[clusters.size()]);
+        int k = V.length;
+        double[] half = new double[k], moved = new double[k];
+        boolean[] dirty = new boolean[k];
+        boolean changed = true;
+
+        while (changed) {
+            //half the distance from each centre to its closest other centre
+            Arrays.fill(half, Double.POSITIVE_INFINITY);
+            for (int a = 0; a < k; a++) {
+                for (int b = a + 1; b < k; b++) {
+                    double d = manDist(V[a].getLoc(), V[b].getLoc()) / 2;
+                    half[a] = Math.min(half[a], d);
+                    half[b] = Math.min(half[b], d);
+                }
+            }
+
+            Arrays.fill(dirty, false);
+            for (int i = 0; i < points.length; i++) {
+                int a = labels[i];
+                if (a >= 0) {
+                    double bound = Math.max(lower[i], half[a]);
+                    if (upper[i] < bound) {
+                        continue;
+                    }
+                    upper[i] = manDist(points[i], V[a].getLoc());
+                    if (upper[i] < bound) {
+                        continue;
+                    }
+                }
+                assign(i, V);
+                if (labels[i] != a) {
+                    if (a >= 0) {
+                        dirty[a] = true;
+                    }
+                    dirty[labels[i]] = true;
+                }
+            }
+
+            //only clusters that gained or lost points can move
+            List<List<Point>> members = gather(dirty);
+            changed = false;
+            for (int a = 0; a < k; a++) {
+                moved[a] = 0.0;
+                if (dirty[a] && !members.get(a).isEmpty()) {
+                    Point old = V[a].getLoc();
+                    V[a].setNeighbourhood(members.get(a));
+                    V[a].calcNewLoc();
+                    moved[a] = manDist(old, V[a].getLoc());
+                    changed |= moved[a] > 0;
+                }
+            }
+            if (changed) {
+                loosen(moved);
+            }
+        }
+
+        for (Cluster c : V) {
+            c.clearNeighbourhood();
+        }
+        for (int i = 0; i < points.length; i++) {
+            V[labels[i]].addNeighbour(points[i]);
+        }
+    }
+
+    /**
+     * Carries the labels over to a new list of clusters. Points whose cluster
+     * is gone are found from scratch on the next run; the rest keep their
+     * cluster, and their lower bounds take the new clusters into account.
+     *
+     * @param before clusters the labels refer to now
+     * @param after clusters the labels should refer to
+     */
+    public void update(List<Cluster> before, List<Cluster> after) {
+        Cluster[] oldV = before.toArray(new Cluster[before.size()]);
+        Cluster[] newV = after.toArray(new Cluster[after.size()]);
+        int[] map = new int[oldV.length];
+        boolean[] kept = new boolean[newV.length];
+        double[] gap = new double[newV.length];
+
+        Arrays.fill(map, -1);
+        for (int a = 0; a < oldV.length; a++) {
+            for (int b = 0; b < newV.length; b++) {
+                if (oldV[a] == newV[b]) {
+                    map[a] = b;
+                    kept[b] = true;
+                    break;
+                }
+            }
+        }
+
+        //distance from each kept centre to the closest new one
+        Arrays.fill(gap, Double.POSITIVE_INFINITY);
+        for (int a = 0; a < newV.length; a++) {
+            for (int b = 0; b < newV.length && kept[a]; b++) {
+                if (!kept[b]) {
+                    gap[a] = Math.min(gap[a],
+                            manDist(newV[a].getLoc(), newV[b].getLoc()));
+                }
+            }
+        }
+
+        for (int i = 0; i < points.length; i++) {
+            if (labels[i] >= 0) {
+                labels[i] = map[labels[i]];
+            }
+            if (labels[i] >= 0) {
+                //a new centre is at least its distance from this point's
+                //centre, minus this point's distance to its centre
+                lower[i] = Math.min(lower[i], gap[labels[i]] - upper[i]);
+            }
+        }
+    }
+
+    /**
+     * Measures a point against every centre and gives it the closest one.
+     *
+     * @param i index of the point
+     * @param V clusters to choose from
+     */
+    private void assign(int i, Cluster[] V) {
+        double best = Double.POSITIVE_INFINITY;
+        double second = Double.POSITIVE_INFINITY;
+        for (int a = 0; a < V.length; a++) {
+            double d = manDist(points[i], V[a].getLoc());
+            if (d < best) {
+                second = best;
+                best = d;
+                labels[i] = a;
+            } else if (d < second) {
+                second = d;
+            }
+        }
+        upper[i] = best;
+        lower[i] = second;
+    }
+
+    /**
+     * Collects the points of every dirty cluster.
+     *
+     * @param dirty which clusters to collect
+     * @return points of each dirty cluster, empty lists for the rest
+     */
+    private List<List<Point>> gather(boolean[] dirty) {
+        List<List<Point>> members = new ArrayList<>(dirty.length);
+        for (int a = 0; a < dirty.length; a++) {
+            members.add(new LinkedList<Point>());
+        }
+        for (int i = 0; i < points.length; i++) {
+            if (dirty[labels[i]]) {
+                members.get(labels[i]).add(points[i]);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Loosens every point's bounds by how far the centres moved.
+     *
+     * @param moved distance each centre moved
+     */
+    private void loosen(double[] moved) {
+        int far = 0;
+        double second = 0.0;
+        for (int a = 1; a < moved.length; a++) {
+            if (moved[a] > moved[far]) {
+                far = a;
+            }
+        }
+        for (int a = 0; a < moved.length; a++) {
+            if (a != far) {
+                second = Math.max(second, moved[a]);
+            }
+        }
+
+        for (int i = 0; i < points.length; i++) {
+            upper[i] += moved[labels[i]];
+            lower[i] -= labels[i] == far ? second : moved[far];
+        }
+    }
+
+    /**
+     * Calculates Manhattan distance between two points
+     *
+     * @param a Point a
+     * @param b Point b
+     * @return Manhattan distance between Points a and b
+     */
+    private double manDist(Point a, Point b) {
+        return Math.abs(a.getX() - b.getX()) + Math.abs(a.getY() - b.getY());
+    }
+}
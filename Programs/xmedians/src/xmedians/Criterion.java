@@ -0,0 +1,80 @@
+package xmedians;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Validity measures that runs can be ranked by.
+ */
+public enum Criterion {
+    /**
+     * Dunn Index, higher is better.
+     */
+    DUNN(true),
+    /**
+     * Within-cluster sum of squares, lower is better.
+     */
+    SSE(false),
+    /**
+     * Calinski-Harabasz score, higher is better.
+     */
+    CALINSKI_HARABASZ(true),
+    /**
+     * Davies-Bouldin score, lower is better.
+     */
+    DAVIES_BOULDIN(false),
+    /**
+     * Bayesian Information Criterion, higher is better.
+     */
+    BIC(true);
+
+    /**
+     * Whether higher scores are better.
+     */
+    private final boolean higherIsBetter;
+
+    /**
+     * Creates a criterion.
+     *
+     * @param higher whether higher scores are better
+     */
+    Criterion(boolean higher) {
+        higherIsBetter = higher;
+    }
+
+    /**
+     * Reads this criterion's score from a set of validity measures.
+     *
+     * @param v validity measures of a run
+     * @return score of the run
+     */
+    public double score(Validity v) {
+        switch (this) {
+            case SSE:
+                return v.getSSE();
+            case CALINSKI_HARABASZ:
+                return v.getCalinskiHarabasz();
+            case DAVIES_BOULDIN:
+                return v.getDaviesBouldin();
+            case BIC:
+                return v.getBIC();
+            default:
+                return v.getDunnIndex();
+        }
+    }
+
+    /**
+     * Compares two scores so that the better one sorts first.
+     *
+     * @param a first score
+     * @param b second score
+     * @return -1 if a is better, 1 if b is better, 0 if equal
+     */
+    public int compare(double a, double b) {
+        if (a == b) {
+            return 0;
+        }
+        return (a > b) == higherIsBetter ? -1 : 1;
+    }
+}
@@ -0,0 +1,73 @@
+package xmedians;
+
+import java.awt.Point;
+import java.util.List;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Finds the diameter of a set of points, the largest distance between any two
+ * of them, in a single pass instead of comparing every pair.
+ *
+ * In 2-D, the Manhattan distance |dx| + |dy| equals max(|du|, |dv|) for the
+ * rotated coordinates u = x + y and v = x - y, so the Manhattan diameter is
+ * the larger of the u and v ranges. The Chebyshev diameter is likewise the
+ * larger of the x and y ranges.
+ */
+public class Diameter {
+
+    /**
+     * Static helper, never instantiated.
+     */
+    private Diameter() {
+    }
+
+    /**
+     * Calculates the largest Manhattan distance between two points of a set.
+     *
+     * @param points set of points
+     * @return largest distance between two of the points, 0 if fewer than 2
+     */
+    public static double manhattan(List<Point> points) {
+        long minU = Long.MAX_VALUE, maxU = Long.MIN_VALUE;
+        long minV = Long.MAX_VALUE, maxV = Long.MIN_VALUE;
+        long u, v;
+
+        if (points.isEmpty()) {
+            return 0.0;
+        }
+        for (Point p : points) {
+            u = (long) p.x + p.y;
+            v = (long) p.x - p.y;
+            minU = Math.min(minU, u);
+            maxU = Math.max(maxU, u);
+            minV = Math.min(minV, v);
+            maxV = Math.max(maxV, v);
+        }
+        return Math.max(maxU - minU, maxV - minV);
+    }
+
+    /**
+     * Calculates the largest Chebyshev distance between two points of a set.
+     *
+     * @param points set of points
+     * @return largest distance between two of the points, 0 if fewer than 2
+     */
+    public static double chebyshev(List<Point> points) {
+        long minX = Long.MAX_VALUE, maxX = Long.MIN_VALUE;
+        long minY = Long.MAX_VALUE, maxY = Long.MIN_VALUE;
+
+        if (points.isEmpty()) {
+            return 0.0;
+        }
+        for (Point p : points) {
+            minX = Math.min(minX, p.x);
+            maxX = Math.max(maxX, p.x);
+            minY = Math.min(minY, p.y);
+            maxY = Math.max(maxY, p.y);
+        }
+        return Math.max(maxX - minX, maxY - minY);
+    }
+}
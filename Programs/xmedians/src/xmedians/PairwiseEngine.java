@@ -0,0 +1,182 @@
+package xmedians;
+
+import java.awt.Point;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Exact all-pairs pass over clustered points, for when no index can be used.
+ * Finds the smallest distance between two points in different clusters and
+ * the largest distance between two points in the same cluster at once.
+ *
+ * Points are cut into blocks small enough that two of them stay in cache, and
+ * only the upper triangle of block pairs is visited. Each row of block pairs
+ * is its own fork-join task, so work-stealing evens out the shorter rows at
+ * the bottom of the triangle.
+ */
+public class PairwiseEngine {
+
+    /**
+     * Number of points per block; two blocks of coordinates and labels come
+     * to 12 KB.
+     */
+    private static final int BLOCK = 512;
+
+    /**
+     * Coordinates and cluster of each point.
+     */
+    private final int[] xs, ys, labels;
+
+    /**
+     * Smallest distance between clusters and largest distance within one.
+     */
+    private final double dmin, dmax;
+
+    /**
+     * Runs the pass over every point in the neighbourhoods of a list of
+     * clusters. A point's cluster is its cluster's position in the list.
+     *
+     * @param clusters clusters whose neighbourhoods to compare
+     */
+    public PairwiseEngine(List<Cluster> clusters) {
+        int n = 0, i = 0, label = 0;
+        for (Cluster c : clusters) {
+            n += c.getNeighbourhood().size();
+        }
+
+        xs = new int[n];
+        ys = new int[n];
+        labels = new int[n];
+        for (Cluster c : clusters) {
+            for (Point p : c.getNeighbourhood()) {
+                xs[i] = p.x;
+                ys[i] = p.y;
+                labels[i] = label;
+                i++;
+            }
+            label++;
+        }
+
+        int blocks = (n + BLOCK - 1) / BLOCK;
+        double[] result = ForkJoinPool.commonPool().invoke(
+                new RowTask(0, blocks));
+        dmin = result[0];
+        dmax = result[1];
+    }
+
+    /**
+     * Getter for the first term of the Dunn Index
+     *
+     * @return smallest distance between objects from 2 different clusters,
+     * infinity if there is only one cluster
+     */
+    public double getDMin() {
+        return dmin;
+    }
+
+    /**
+     * Getter for the second term of the Dunn Index
+     *
+     * @return largest distance between 2 objects in the same cluster
+     */
+    public double getDMax() {
+        return dmax;
+    }
+
+    /**
+     * Compares every pair of points between two blocks.
+     *
+     * @param a first block
+     * @param b second block, no lower than a
+     * @param result {dmin, dmax} so far, updated in place
+     */
+    private void compareBlocks(int a, int b, double[] result) {
+        int aEnd = Math.min(xs.length, (a + 1) * BLOCK);
+        int bEnd = Math.min(xs.length, (b + 1) * BLOCK);
+        double shortest = result[0], largest = result[1], dist;
+
+        for (int i = a * BLOCK; i < aEnd; i++) {
+            //inside a diagonal block only look at pairs above the diagonal
+            for (int j = (a == b ? i + 1 : b * BLOCK); j < bEnd; j++) {
+                dist = manDist(i, j);
+                if (labels[i] == labels[j]) {
+                    largest = Math.max(largest, dist);
+                } else {
+                    shortest = Math.min(shortest, dist);
+                }
+            }
+        }
+        result[0] = shortest;
+        result[1] = largest;
+    }
+
+    /**
+     * Manhattan distance between two points.
+     *
+     * @param a index of point a
+     * @param b index of point b
+     * @return Manhattan distance between points a and b
+     */
+    private double manDist(int a, int b) {
+        return Math.abs((double) xs[a] - xs[b])
+                + Math.abs((double) ys[a] - ys[b]);
+    }
+
+    /**
+     * Handles a range of block rows, splitting it in half until a single row
+     * is left.
+     */
+    private class RowTask extends RecursiveTask<double[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Range of block rows, from inclusive and to exclusive.
+         */
+        private final int from, to;
+
+        /**
+         * Creates a task over a range of block rows.
+         *
+         * @param f first row
+         * @param t one past the last row
+         */
+        RowTask(int f, int t) {
+            from = f;
+            to = t;
+        }
+
+        /**
+         * Compares every block pair in the range of rows.
+         *
+         * @return {dmin, dmax} over the range
+         */
+        @Override
+        protected double[] compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                RowTask top = new RowTask(from, mid);
+                top.fork();
+                double[] bottom = new RowTask(mid, to).compute();
+                double[] result = top.join();
+                result[0] = Math.min(result[0], bottom[0]);
+                result[1] = Math.max(result[1], bottom[1]);
+                return result;
+            }
+
+            int blocks = (xs.length + BLOCK - 1) / BLOCK;
+            double[] result = {Double.POSITIVE_INFINITY, 0.0};
+            for (int row = from; row < to; row++) {
+                for (int col = row; col < blocks; col++) {
+                    compareBlocks(row, col, result);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package xmedians;
+
+import java.awt.Point;
+import java.io.*;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * The hierarchy of splits that led to a set of clusters, kept so new points
+ * can be given their closest cluster without measuring every centre.
+ *
+ * Leaves are the clusters, internal nodes are the clusters that were split.
+ * Every node holds a ball around the centres of the leaves under it. A lookup
+ * goes down the closer side first and only backtracks into a subtree whose
+ * ball is not already further away than the best centre found, so the answer
+ * is always the exact closest centre, ties going to the first cluster.
+ */
+public class SplitTree implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Children of each node, -1 for leaves.
+     */
+    private final int[] left, right;
+
+    /**
+     * Cluster each leaf stands for, as a position in the cluster list, -1 for
+     * internal nodes.
+     */
+    private final int[] leaf;
+
+    /**
+     * Node the tree starts at.
+     */
+    private final int root;
+
+    /**
+     * Centre of each cluster.
+     */
+    private final int[] xs, ys;
+
+    /**
+     * Centre and radius of each node's ball.
+     */
+    private final double[] ballX, ballY, radius;
+
+    /**
+     * Creates a tree from its shape and the cluster centres.
+     *
+     * @param l left child of each node, -1 for leaves
+     * @param r right child of each node, -1 for leaves
+     * @param c cluster of each leaf, -1 for internal nodes
+     * @param top root node
+     * @param x x coordinate of each cluster centre
+     * @param y y coordinate of each cluster centre
+     */
+    public SplitTree(int[] l, int[] r, int[] c, int top, int[] x, int[] y) {
+        left = l;
+        right = r;
+        leaf = c;
+        root = top;
+        xs = x;
+        ys = y;
+        ballX = new double[l.length];
+        ballY = new double[l.length];
+        radius = new double[l.length];
+        ball(root);
+    }
+
+    /**
+     * Reads a tree written by save.
+     *
+     * @param file file to read from
+     * @return the tree
+     * @throws IOException if the file cannot be read or is not a tree
+     */
+    public static SplitTree load(File file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            return (SplitTree) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Not a split tree: " + file, e);
+        }
+    }
+
+    /**
+     * Writes the tree to a file.
+     *
+     * @param file file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(this);
+        }
+    }
+
+    /**
+     * Finds the cluster whose centre is closest to a point.
+     *
+     * @param p point to look up
+     * @return position of the closest cluster in the cluster list
+     */
+    public int nearest(Point p) {
+        double[] best = {Double.POSITIVE_INFINITY, -1};
+        search(root, p, best);
+        return (int) best[1];
+    }
+
+    /**
+     * Getter for a cluster's centre
+     *
+     * @param i position of the cluster in the cluster list
+     * @return centre of the cluster
+     */
+    public Point getCentre(int i) {
+        return new Point(xs[i], ys[i]);
+    }
+
+    /**
+     * Getter for the number of clusters
+     *
+     * @return number of leaves
+     */
+    public int size() {
+        return xs.length;
+    }
+
+    /**
+     * Searches a subtree for a centre closer than the best one found so far.
+     *
+     * @param node subtree to search
+     * @param p point being looked up
+     * @param best distance and position of the best centre so far, updated
+     * in place
+     */
+    private void search(int node, Point p, double[] best) {
+        if (leaf[node] >= 0) {
+            double d = manDist(p, xs[leaf[node]], ys[leaf[node]]);
+            if (d < best[0] || (d == best[0] && leaf[node] < best[1])) {
+                best[0] = d;
+                best[1] = leaf[node];
+            }
+            return;
+        }
+
+        int near = left[node], far = right[node];
+        if (gap(far, p) < gap(near, p)) {
+            near = right[node];
+            far = left[node];
+        }
+        //a tie could still be won by a cluster earlier in the list, so only
+        //skip a ball that is strictly further away
+        if (gap(near, p) <= best[0]) {
+            search(near, p, best);
+        }
+        if (gap(far, p) <= best[0]) {
+            search(far, p, best);
+        }
+    }
+
+    /**
+     * Smallest distance a point could be from any centre in a node's ball.
+     *
+     * @param node node to measure to
+     * @param p point being looked up
+     * @return lower bound on the distance to the node's centres
+     */
+    private double gap(int node, Point p) {
+        return Math.max(0.0, manDist(p, ballX[node], ballY[node])
+                - radius[node]);
+    }
+
+    /**
+     * Works out the balls of a subtree, centred on the mean of its leaves'
+     * centres. Radii are widened slightly so rounding can never skip the
+     * true closest centre.
+     *
+     * @param node subtree to work out
+     * @return number of leaves in the subtree
+     */
+    private int ball(int node) {
+        if (leaf[node] >= 0) {
+            ballX[node] = xs[leaf[node]];
+            ballY[node] = ys[leaf[node]];
+            return 1;
+        }
+
+        int a = ball(left[node]), b = ball(right[node]);
+        ballX[node] = (a * ballX[left[node]] + b * ballX[right[node]])
+                / (a + b);
+        ballY[node] = (a * ballY[left[node]] + b * ballY[right[node]])
+                / (a + b);
+        radius[node] = Math.max(farthest(left[node], node),
+                farthest(right[node], node));
+        radius[node] += 1e-9 * (radius[node] + 1.0);
+        return a + b;
+    }
+
+    /**
+     * Finds the leaf centre in a subtree furthest from another node's ball
+     * centre.
+     *
+     * @param node subtree to search
+     * @param from node whose ball centre to measure from
+     * @return largest distance to a leaf centre in the subtree
+     */
+    private double farthest(int node, int from) {
+        if (leaf[node] >= 0) {
+            return manDist(new Point(xs[leaf[node]], ys[leaf[node]]),
+                    ballX[from], ballY[from]);
+        }
+        return Math.max(farthest(left[node], from),
+                farthest(right[node], from));
+    }
+
+    /**
+     * Calculates Manhattan distance between a point and a location
+     *
+     * @param a Point a
+     * @param x x coordinate of the location
+     * @param y y coordinate of the location
+     * @return Manhattan distance between a and (x, y)
+     */
+    private double manDist(Point a, double x, double y) {
+        return Math.abs(a.getX() - x) + Math.abs(a.getY() - y);
+    }
+}
@@ -0,0 +1,381 @@
+package xmedians;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author agent <agent@local>
+ * @version 1
+ * @since 2026-10-19
+ *
+ * Validity measures of one clustering result. Nothing is computed until it is
+ * asked for, and everything is kept once computed, so asking twice costs
+ * nothing. Cluster diameters are kept individually so they can be shared
+ * between dmax and anything else that ranks clusters by size.
+ *
+ * Besides the Dunn Index, the SSE, Calinski-Harabasz, Davies-Bouldin and BIC
+ * scores are worked out from each cluster's size, coordinate sums and sum of
+ * squares, which the clusters collect as points are assigned. They take
+ * O(k^2) at most, however many points there are.
+ *
+ * Diameters are worked out one task per cluster, so a few large clusters do
+ * not hold up the rest.
+ *
+ * The clusters must not change while this is in use.
+ */
+public class Validity {
+
+    /**
+     * Number of dimensions of the data.
+     */
+    private static final int DIMENSIONS = 2;
+
+    /**
+     * Most points for which the Dunn terms come from one exact all-pairs pass
+     * even when the kd-tree was asked for; at this size the pass is quick.
+     */
+    private static final int PAIRWISE_POINTS = 1 << 11;
+
+    /**
+     * Clusters being measured, with their neighbourhoods.
+     */
+    private final List<Cluster> V;
+
+    /**
+     * Whether to use the kd-tree and diameters (true) or the all-pairs engine.
+     * Small data sets always use the all-pairs engine.
+     */
+    private final boolean indexed;
+
+    /**
+     * Diameter of each cluster, null until first needed.
+     */
+    private double[] diameters;
+
+    /**
+     * Dunn Index and its two terms, null until first needed.
+     */
+    private Double dunn, dmin, dmax;
+
+    /**
+     * Size, mean and within-cluster sum of squares of each cluster, null
+     * until first needed.
+     */
+    private double[] sizes, meanX, meanY, within;
+
+    /**
+     * Scores built from the cluster sums, null until first needed.
+     */
+    private Double sse, calinski, davies, bic;
+
+    /**
+     * Creates the validity measures for a set of clusters.
+     *
+     * @param clusters final clusters of the run, with their neighbourhoods
+     * @param idx whether to use the kd-tree and diameters (true) or an exact
+     * all-pairs pass (false) on data sets of more than PAIRWISE_POINTS points
+     */
+    public Validity(List<Cluster> clusters, boolean idx) {
+        int n = 0;
+        for (Cluster c : clusters) {
+            n += c.getNeighbourhood().size();
+        }
+        V = clusters;
+        indexed = idx && n > PAIRWISE_POINTS;
+    }
+
+    /**
+     * Calculates Dunn Index of the set of clusters
+     *
+     * @return Dunn index
+     */
+    public double getDunnIndex() {
+        if (dunn == null) {
+            if (V.size() == 1 || getDMax() == 0) {
+                dunn = 0.0;
+            } else {
+                dunn = getDMin() / getDMax();
+            }
+        }
+        return dunn;
+    }
+
+    /**
+     * Calculates first term for Dunn Index
+     *
+     * @return smallest distance between objects from 2 different clusters
+     */
+    public double getDMin() {
+        if (dmin == null) {
+            if (indexed) {
+                dmin = new KdTree(V).closestPair();
+            } else {
+                pairwise();
+            }
+        }
+        return dmin;
+    }
+
+    /**
+     * Calculates second term for Dunn Index
+     *
+     * @return largest distance between 2 objects in the same cluster
+     */
+    public double getDMax() {
+        if (dmax == null) {
+            if (indexed || diameters != null) {
+                double largest = 0.0;
+                for (int i = 0; i < V.size(); i++) {
+                    largest = Math.max(largest, getDiameter(i));
+                }
+                dmax = largest;
+            } else {
+                pairwise();
+            }
+        }
+        return dmax;
+    }
+
+    /**
+     * Calculates the diameter of a single cluster
+     *
+     * @param i position of the cluster in the list
+     * @return largest distance between 2 objects in the cluster
+     */
+    public double getDiameter(int i) {
+        if (diameters == null) {
+            double[] d = new double[V.size()];
+            List<DiameterTask> tasks = new ArrayList<>();
+            int j = 0;
+            for (Cluster c : V) {
+                tasks.add(new DiameterTask(c.getNeighbourhood(), d, j++));
+            }
+            ForkJoinTask.invokeAll(tasks);
+            diameters = d;
+        }
+        return diameters[i];
+    }
+
+    /**
+     * Calculates the sum of squared distances from each point to its cluster
+     * mean
+     *
+     * @return within-cluster sum of squares, lower is better
+     */
+    public double getSSE() {
+        if (sse == null) {
+            stats();
+            double total = 0.0;
+            for (double w : within) {
+                total += w;
+            }
+            sse = total;
+        }
+        return sse;
+    }
+
+    /**
+     * Calculates the Calinski-Harabasz score, the ratio of between-cluster to
+     * within-cluster dispersion, each divided by its degrees of freedom
+     *
+     * @return Calinski-Harabasz score, higher is better
+     */
+    public double getCalinskiHarabasz() {
+        if (calinski == null) {
+            stats();
+            int k = nonEmpty();
+            double n = 0.0, allX = 0.0, allY = 0.0, between = 0.0;
+            for (int i = 0; i < sizes.length; i++) {
+                n += sizes[i];
+                allX += sizes[i] * meanX[i];
+                allY += sizes[i] * meanY[i];
+            }
+            allX /= n;
+            allY /= n;
+            for (int i = 0; i < sizes.length; i++) {
+                between += sizes[i] * (Math.pow(meanX[i] - allX, 2)
+                        + Math.pow(meanY[i] - allY, 2));
+            }
+
+            if (k < 2 || n <= k) {
+                calinski = 0.0;
+            } else if (getSSE() == 0) {
+                calinski = Double.POSITIVE_INFINITY;
+            } else {
+                calinski = (between / (k - 1)) / (getSSE() / (n - k));
+            }
+        }
+        return calinski;
+    }
+
+    /**
+     * Calculates the Davies-Bouldin score, the average over clusters of the
+     * worst ratio of combined spread to distance between means. Spread is
+     * the root mean square distance to the mean.
+     *
+     * @return Davies-Bouldin score, lower is better
+     */
+    public double getDaviesBouldin() {
+        if (davies == null) {
+            stats();
+            double total = 0.0, worst, ratio;
+            double[] spread = new double[sizes.length];
+            for (int i = 0; i < sizes.length; i++) {
+                if (sizes[i] > 0) {
+                    spread[i] = Math.sqrt(within[i] / sizes[i]);
+                }
+            }
+
+            for (int i = 0; i < sizes.length; i++) {
+                if (sizes[i] == 0) {
+                    continue;
+                }
+                worst = 0.0;
+                for (int j = 0; j < sizes.length; j++) {
+                    if (j == i || sizes[j] == 0) {
+                        continue;
+                    }
+                    ratio = (spread[i] + spread[j]) / Math.hypot(
+                            meanX[i] - meanX[j], meanY[i] - meanY[j]);
+                    worst = Math.max(worst, ratio);
+                }
+                total += worst;
+            }
+            davies = nonEmpty() < 2 ? 0.0 : total / nonEmpty();
+        }
+        return davies;
+    }
+
+    /**
+     * Calculates the Bayesian Information Criterion of the clusters, treated
+     * as spherical Gaussians sharing one variance (Pelleg and Moore):
+     * log-likelihood minus half the number of free parameters times log n.
+     *
+     * @return BIC score, higher is better
+     */
+    public double getBIC() {
+        if (bic == null) {
+            stats();
+            int k = nonEmpty();
+            double n = 0.0, likelihood = 0.0, variance;
+            for (double m : sizes) {
+                n += m;
+            }
+            if (n <= k) {
+                bic = Double.NEGATIVE_INFINITY;
+                return bic;
+            }
+
+            variance = Math.max(getSSE() / (DIMENSIONS * (n - k)),
+                    Double.MIN_NORMAL);
+            for (double m : sizes) {
+                if (m > 0) {
+                    likelihood += m * Math.log(m / n);
+                }
+            }
+            likelihood -= n * DIMENSIONS / 2.0
+                    * Math.log(2 * Math.PI * variance);
+            likelihood -= DIMENSIONS * (n - k) / 2.0;
+
+            //k - 1 mixing weights, k means and one shared variance
+            double parameters = (k - 1) + DIMENSIONS * k + 1;
+            bic = likelihood - parameters / 2.0 * Math.log(n);
+        }
+        return bic;
+    }
+
+    /**
+     * Works out each cluster's size, mean and within-cluster sum of squares
+     * from the sums it collected.
+     */
+    private void stats() {
+        if (sizes != null) {
+            return;
+        }
+        sizes = new double[V.size()];
+        meanX = new double[V.size()];
+        meanY = new double[V.size()];
+        within = new double[V.size()];
+        for (int i = 0; i < V.size(); i++) {
+            Cluster c = V.get(i);
+            sizes[i] = c.getNeighbourhood().size();
+            if (sizes[i] > 0) {
+                meanX[i] = c.getSumX() / sizes[i];
+                meanY[i] = c.getSumY() / sizes[i];
+                within[i] = Math.max(0.0, c.getSumSq() - sizes[i]
+                        * (meanX[i] * meanX[i] + meanY[i] * meanY[i]));
+            }
+        }
+    }
+
+    /**
+     * Counts the clusters that have at least one point.
+     *
+     * @return number of non-empty clusters
+     */
+    private int nonEmpty() {
+        int count = 0;
+        for (double m : sizes) {
+            if (m > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Fills in both Dunn terms with one exact all-pairs pass.
+     */
+    private void pairwise() {
+        PairwiseEngine pairs = new PairwiseEngine(V);
+        dmin = pairs.getDMin();
+        dmax = pairs.getDMax();
+    }
+
+    /**
+     * Works out the diameter of one cluster.
+     */
+    private static class DiameterTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Points of the cluster.
+         */
+        private final List<Point> points;
+
+        /**
+         * Array to store the diameter in.
+         */
+        private final double[] result;
+
+        /**
+         * Position of the cluster in the list.
+         */
+        private final int index;
+
+        /**
+         * Creates a task for one cluster.
+         *
+         * @param p points of the cluster
+         * @param r array to store the diameter in
+         * @param i position of the cluster in the list
+         */
+        DiameterTask(List<Point> p, double[] r, int i) {
+            points = p;
+            result = r;
+            index = i;
+        }
+
+        /**
+         * Works out the diameter.
+         */
+        @Override
+        protected void compute() {
+            result[index] = Diameter.manhattan(points);
+        }
+    }
+}